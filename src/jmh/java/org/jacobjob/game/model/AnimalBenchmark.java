@@ -0,0 +1,62 @@
+package org.jacobjob.game.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Moving all animals of a board one step. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnimalBenchmark {
+
+  @Param({"30", "1000", "10000", "100000"})
+  private int animals;
+
+  @Param({"2400x1400", "9600x5600"})
+  private String board;
+
+  private Animal[] herd;
+
+  @Setup
+  public void setup() {
+    final String[] size = board.split("x");
+    final GameRandom random = new GameRandom(42);
+    herd = new Animal[animals];
+    for (int i = 0; i < animals; i++) {
+      herd[i] =
+          new Animal(
+              i,
+              i % 5 == 0 ? AnimalType.POLICE : AnimalType.SNAKE,
+              Integer.parseInt(size[0]),
+              Integer.parseInt(size[1]),
+              random.split());
+    }
+  }
+
+  @Benchmark
+  public void step() {
+    for (final Animal animal : herd) {
+      animal.step();
+    }
+  }
+
+  @Benchmark
+  public void safeGuardEdges() {
+    for (final Animal animal : herd) {
+      animal.safeGuardEdges();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package org.jacobjob.game.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Copying visible animals to DTOs, and serialising a frame of them with Jackson or in binary. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameEncodingBenchmark {
+
+  @Param({"30", "1000", "10000"})
+  private int animals;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<Animal> herd = new ArrayList<>();
+  private FrameDTO frame;
+
+  @Setup
+  public void setup() {
+    final GameRandom random = new GameRandom(42);
+    for (int i = 0; i < animals; i++) {
+      herd.add(new Animal(i, AnimalType.values()[i % 4], 1200, 700, random.split()));
+    }
+    frame = new FrameDTO(true, 0, 0, 0, toDTOs(), List.of());
+  }
+
+  @Benchmark
+  public List<AnimalDTO> toDTOs() {
+    final List<AnimalDTO> dtos = new ArrayList<>(herd.size());
+    for (final Animal animal : herd) {
+      dtos.add(new AnimalDTO(animal));
+    }
+    return dtos;
+  }
+
+  @Benchmark
+  public byte[] json() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(frame);
+  }
+
+  @Benchmark
+  public byte[] binary() {
+    return BinaryFrameCodec.encode(frame);
+  }
+}
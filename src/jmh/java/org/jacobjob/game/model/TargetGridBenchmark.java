@@ -0,0 +1,91 @@
+package org.jacobjob.game.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Finding the nearest gold for every snake of a tick, with the target grid and with a scan over
+ * all gold, as the amount of gold grows. Results are per query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetGridBenchmark {
+
+  private static final int MAX_X = 9600;
+  private static final int MAX_Y = 5600;
+  private static final int QUERIES = 1000;
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  private int gold;
+
+  private final List<Animal> animals = new ArrayList<>();
+  private final TargetGrid grid = new TargetGrid();
+  private final int[] queryX = new int[QUERIES];
+  private final int[] queryY = new int[QUERIES];
+
+  @Setup
+  public void setup() {
+    final GameRandom random = new GameRandom(42);
+    animals.add(new Animal(1, AnimalType.PLAYER, MAX_X, MAX_Y, random.split()));
+    for (int i = 0; i < gold; i++) {
+      animals.add(new Animal(i + 2, AnimalType.GOLD, MAX_X, MAX_Y, random.split()));
+    }
+    grid.rebuild(animals, MAX_X, MAX_Y);
+    for (int i = 0; i < QUERIES; i++) {
+      queryX[i] = random.nextInt(MAX_X);
+      queryY[i] = random.nextInt(MAX_Y);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERIES)
+  public void nearest(final Blackhole blackhole) {
+    for (int i = 0; i < QUERIES; i++) {
+      blackhole.consume(grid.nearest(queryX[i], queryY[i], AnimalType.GOLD, MAX_X));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERIES)
+  public void scan(final Blackhole blackhole) {
+    for (int i = 0; i < QUERIES; i++) {
+      Animal best = null;
+      long bestSquared = Long.MAX_VALUE;
+      for (int j = 0; j < animals.size(); j++) {
+        final Animal animal = animals.get(j);
+        if (!animal.isGold()) continue;
+        final long dx = animal.getX() - queryX[i];
+        final long dy = animal.getY() - queryY[i];
+        if (dx * dx + dy * dy < bestSquared) {
+          best = animal;
+          bestSquared = dx * dx + dy * dy;
+        }
+      }
+      blackhole.consume(best);
+    }
+  }
+
+  /** Rebuilding the grid, done once every tick. */
+  @Benchmark
+  public void rebuild() {
+    grid.rebuild(animals, MAX_X, MAX_Y);
+  }
+}
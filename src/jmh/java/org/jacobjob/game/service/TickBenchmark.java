@@ -0,0 +1,152 @@
+package org.jacobjob.game.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.Animal;
+import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.CollisionMode;
+import org.jacobjob.game.model.GameRandom;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.TickMode;
+import org.jacobjob.game.model.Trigonometry;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+/**
+ * Phases of a game tick on a board of many animals, without a websocket server: messages are sent
+ * to a channel that drops them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+  @Param({"30", "1000", "10000", "100000"})
+  private int animals;
+
+  @Param({"2400x1400", "9600x5600"})
+  private String board;
+
+  @Param({"SEQUENTIAL", "PARALLEL"})
+  private TickMode tickMode;
+
+  @Param({"EXACT", "ROTATED"})
+  private Trigonometry trigonometry;
+
+  @Param({"1", "4"})
+  private int lodInterval;
+
+  @Param({"GRID", "SWEEP"})
+  private CollisionMode collisionMode;
+
+  private final GameProperties properties = new GameProperties();
+  private final GameMetrics metrics = new GameMetrics(new SimpleMeterRegistry());
+  private ForkJoinPool tickPool;
+  private GameBoardService gameBoardService;
+  private GameState state;
+
+  @Setup
+  public void setup() {
+    final String[] size = board.split("x");
+    properties.setBoardWidth(Integer.parseInt(size[0]));
+    properties.setBoardHeight(Integer.parseInt(size[1]));
+    properties.setTickMode(tickMode);
+    properties.setTrigonometry(trigonometry);
+    properties.setLodInterval(lodInterval);
+    properties.setCollisionMode(collisionMode);
+    tickPool = new ForkJoinPool();
+    final WebSocketService webSocketService =
+        new WebSocketService(
+            new OutboundPublisher(
+                new SimpMessagingTemplate((message, timeout) -> true),
+                properties,
+                metrics,
+                Runnable::run),
+            new GameStateRepository(properties),
+            properties,
+            new RawSocketService(properties, metrics));
+    gameBoardService =
+        new GameBoardService(
+            webSocketService, properties, tickPool, metrics, new EventJournal(properties));
+  }
+
+  /** Start every iteration from the same board, as collisions thin out the animals. */
+  @Setup(Level.Iteration)
+  public void resetBoard() {
+    state = newBoard();
+    state.pause = false;
+    state.resetBoard = false;
+  }
+
+  @TearDown
+  public void tearDown() {
+    tickPool.shutdownNow();
+  }
+
+  @Benchmark
+  public void tick() {
+    // Keep playing this board after the player died, instead of resetting to a small one
+    state.resetBoard = false;
+    gameBoardService.tick(state);
+  }
+
+  @Benchmark
+  public void handleCollisions() {
+    gameBoardService.handleCollisions(state);
+  }
+
+  /** Board where every tenth animal has died, so the clean up has work to do. */
+  @State(Scope.Thread)
+  public static class DeadAnimals {
+    private GameState state;
+
+    @Setup(Level.Invocation)
+    public void killAnimals(final TickBenchmark benchmark) {
+      state = benchmark.newBoard();
+      for (int i = 1; i < state.animals.size(); i += 10) {
+        state.animals.get(i).kill();
+      }
+    }
+  }
+
+  @Benchmark
+  public void handleDeadAnimals(final DeadAnimals deadAnimals) {
+    gameBoardService.handleDeadAnimals(deadAnimals.state);
+  }
+
+  /** The same board each time, as the animals are created from the same seed. */
+  private GameState newBoard() {
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    final GameRandom random = new GameRandom(42);
+    final AnimalType[] types = {
+      AnimalType.PLAYER, AnimalType.SNAKE, AnimalType.SNAKE, AnimalType.POLICE, AnimalType.GOLD
+    };
+    for (int i = 0; i < animals; i++) {
+      final AnimalType type = i == 0 ? AnimalType.PLAYER : types[1 + i % (types.length - 1)];
+      state.animals.add(
+          new Animal(
+              i, type, properties.getBoardWidth(), properties.getBoardHeight(), random.split()));
+    }
+    state.player = state.animals.getFirst();
+    state.random = new GameRandom(42);
+    return state;
+  }
+}
@@ -0,0 +1,119 @@
+package org.jacobjob.game.config;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+import org.jacobjob.game.model.CollisionMode;
+import org.jacobjob.game.model.OverflowPolicy;
+import org.jacobjob.game.model.PublishMode;
+import org.jacobjob.game.model.TickMode;
+import org.jacobjob.game.model.Trigonometry;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Game settings, configured with the {@code game.*} application properties. Invalid rates stop the
+ * application at startup.
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "game")
+public class GameProperties {
+
+  /** Game ticks per second. */
+  @Positive private int tickRate = 20;
+
+  /** Ticks run back to back to catch up after a stall; beyond this, ticks are skipped. */
+  private int maxCatchUpTicks = 5;
+
+  /** Size of the board, in pixels. */
+  private int boardWidth = 1200 * 2;
+
+  private int boardHeight = 700 * 2;
+
+  /** Snakes on a new board; a quarter of this is added as police, and a third as gold. */
+  private int amountOfSnakes = 30;
+
+  /** Maximum amount of game rooms, including the default room. */
+  private int maxRooms = 64;
+
+  /** Threads ticking the rooms; 0 uses one thread per available core. */
+  private int roomThreads = 0;
+
+  /** Seed of the first board of each room, to replay the same games; random if not set. */
+  private Long seed = null;
+
+  private TickMode tickMode = TickMode.SEQUENTIAL;
+
+  /** Threads for the parallel tick mode; 0 uses one thread per available core. */
+  private int parallelThreads = 0;
+
+  private Trigonometry trigonometry = Trigonometry.EXACT;
+
+  private CollisionMode collisionMode = CollisionMode.GRID;
+
+  /**
+   * Animals farther than this many pixels outside the viewport are moved and checked for
+   * collisions only every {@link #lodInterval} ticks.
+   */
+  private int lodDistance = 300;
+
+  /**
+   * Pixels within which snakes head for the nearest gold, and police for the player, when nothing
+   * is close by; 0 to let them wander.
+   */
+  private int seekDistance = 0;
+
+  /** Ticks between moves of far animals, taking as many steps in a row; 1 moves all every tick. */
+  private int lodInterval = 1;
+
+  private PublishMode publishMode = PublishMode.FRAME;
+
+  /**
+   * Frames sent per second, spread over the ticks; 0 sends a frame every tick. Clients interpolate
+   * the animals between the frames they receive.
+   */
+  @PositiveOrZero private int publishRate = 0;
+
+  /** Send all visible animals every this many frames, in between only the changes. */
+  private int keyframeInterval = 40;
+
+  /** Pixels around the viewport of a client in which animals are sent to its own queue. */
+  private int viewMargin = 100;
+
+  /** Milliseconds a native websocket client may take to receive a frame before it is dropped. */
+  private int socketSendTimeLimit = 2000;
+
+  /** Control codes a client may send per second on average; 0 to not limit them. */
+  @PositiveOrZero private int controlRate = 20;
+
+  /** Control codes a client may send in a burst, before the control rate holds it back. */
+  private int controlBurst = 10;
+
+  /** Threads sending STOMP messages; 0 uses a virtual thread per destination that has messages. */
+  private int outboundThreads = 0;
+
+  /** Messages queued per destination, before the overflow policy drops messages. */
+  private int outboundQueueSize = 64;
+
+  /** Messages dropped when the queue of a destination is full. */
+  private OverflowPolicy outboundOverflow = OverflowPolicy.DROP_OLDEST;
+
+  /** File the rooms are saved to, and restored from on startup; empty to not save them. */
+  private String snapshotFile = null;
+
+  /** Seconds between snapshots, next to the one taken on shutdown. */
+  private int snapshotInterval = 30;
+
+  /** Seconds a restored room waits for a client, before it is closed. */
+  private int restoredRoomGrace = 60;
+
+  /** Directory of the event journal, to replay games; empty to not journal them. */
+  private String journalDirectory = null;
+
+  /** Bytes after which the journal starts a next segment file. */
+  private long journalSegmentSize = 64L * 1024 * 1024;
+
+  /** Journal segments kept; older ones are deleted. */
+  private int journalSegments = 10;
+}
@@ -0,0 +1,81 @@
+package org.jacobjob.game.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.jacobjob.game.service.EventJournal;
+import org.jacobjob.game.service.GameLoop;
+import org.jacobjob.game.service.OutboundPublisher;
+import org.jacobjob.game.service.RawSocketService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Meters read from the state of the game when scraped, next to the meters recorded by {@link
+ * org.jacobjob.game.service.GameMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  public MeterBinder gameStateMetrics(final GameStateRepository gameState) {
+    return registry -> {
+      Gauge.builder("game.rooms", gameState, repository -> repository.getStates().size())
+          .description("Open rooms")
+          .register(registry);
+      for (final AnimalType type : AnimalType.values()) {
+        Gauge.builder("game.animals", gameState, repository -> countAnimals(repository, type))
+            .description("Animals on the boards of all rooms")
+            .tag("type", type.name().toLowerCase())
+            .register(registry);
+      }
+    };
+  }
+
+  private static double countAnimals(final GameStateRepository gameState, final AnimalType type) {
+    int count = 0;
+    for (final GameState state : gameState.getStates()) {
+      count += state.animalCounts.get(type.ordinal());
+    }
+    return count;
+  }
+
+  @Bean
+  public MeterBinder gameLoopMetrics(final GameLoop gameLoop) {
+    return registry ->
+        FunctionCounter.builder("game.tick.skipped", gameLoop, GameLoop::getSkippedTicks)
+            .description("Ticks skipped to catch up after a stall")
+            .register(registry);
+  }
+
+  @Bean
+  public MeterBinder journalMetrics(final EventJournal journal) {
+    return registry ->
+        FunctionCounter.builder("game.journal.dropped", journal, EventJournal::getDroppedRecords)
+            .description("Journal records dropped because writing the journal was behind")
+            .register(registry);
+  }
+
+  @Bean
+  public MeterBinder outboundMetrics(
+      final OutboundPublisher publisher, final RawSocketService rawSocketService) {
+    return registry -> {
+      Gauge.builder("game.outbound.queued", publisher, OutboundPublisher::getQueueDepth)
+          .description("STOMP messages waiting to be sent")
+          .register(registry);
+      FunctionCounter.builder("game.outbound.dropped", publisher, OutboundPublisher::getDropped)
+          .description("STOMP messages dropped because their queue was full")
+          .register(registry);
+      FunctionCounter.builder("game.outbound.failed", publisher, OutboundPublisher::getFailed)
+          .description("STOMP messages that could not be sent")
+          .register(registry);
+      FunctionCounter.builder(
+              "game.socket.coalesced", rawSocketService, RawSocketService::getCoalescedFrames)
+          .description("Native websocket frames replaced by a next frame before they were sent")
+          .register(registry);
+    };
+  }
+}
@@ -0,0 +1,22 @@
+package org.jacobjob.game.config;
+
+import lombok.AllArgsConstructor;
+import org.jacobjob.game.service.RawSocketHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/** Native websocket endpoint for binary frames, next to the STOMP endpoint for SockJS clients. */
+@Configuration
+@EnableWebSocket
+@AllArgsConstructor
+public class RawWebSocketConfig implements WebSocketConfigurer {
+
+  private final RawSocketHandler rawSocketHandler;
+
+  @Override
+  public void registerWebSocketHandlers(final WebSocketHandlerRegistry registry) {
+    registry.addHandler(rawSocketHandler, "/frames").setAllowedOriginPatterns("*");
+  }
+}
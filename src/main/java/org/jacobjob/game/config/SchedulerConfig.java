@@ -1,9 +1,20 @@
 package org.jacobjob.game.config;
 
+import java.util.concurrent.ForkJoinPool;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-/** Class is needed to start scheduler */
+/** Class is needed to start scheduler, and holds the pools used by the game ticks */
 @Configuration
 @EnableScheduling
-public class SchedulerConfig {}
+public class SchedulerConfig {
+
+  /** Pool for the parallel parts of a tick, see {@link org.jacobjob.game.model.TickMode}. */
+  @Bean(destroyMethod = "shutdownNow")
+  public ForkJoinPool tickPool(final GameProperties properties) {
+    return properties.getParallelThreads() > 0
+        ? new ForkJoinPool(properties.getParallelThreads())
+        : new ForkJoinPool();
+  }
+}
@@ -1,6 +1,6 @@
 package org.jacobjob.game.model;
 
-import java.util.Random;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -8,7 +8,6 @@ import lombok.extern.slf4j.Slf4j;
 @Getter
 public class Animal {
   private static final int FROM_EDGE = 50;
-  private static final Random random = new Random();
 
   // Orientation
   public static final double NORTH = 1.5d * Math.PI;
@@ -24,10 +23,21 @@ public class Animal {
   private final int maxY;
 
   private double orientation = 0;
+  // Unit vector of the orientation, updated on first use after the orientation changed
+  @Getter(AccessLevel.NONE)
+  private double directionX = 1;
+
+  @Getter(AccessLevel.NONE)
+  private double directionY = 0;
+
+  @Getter(AccessLevel.NONE)
+  private double directionOf = 0;
+
   private int quadrant = 1;
   private int corrections;
   private boolean avoiding = false; // avoiding edges
   private final AnimalType animalType;
+  private final GameRandom random;
 
   private double speed = 5;
   private int size = 8;
@@ -35,9 +45,11 @@ public class Animal {
   private boolean alive;
   private int stepsAlive;
 
-  public Animal(int number, final AnimalType type, final int maxX, final int maxY) {
+  public Animal(
+      int number, final AnimalType type, final int maxX, final int maxY, final GameRandom random) {
     this.maxX = maxX;
     this.maxY = maxY;
+    this.random = random;
     createAnimal();
     this.number = number;
     animalType = type;
@@ -45,10 +57,45 @@ public class Animal {
     if (isPlayer()) speed -= 2;
   }
 
+  /** Animal in a state read from a snapshot, see {@link GameSnapshotCodec}. */
+  Animal(
+      final int number,
+      final AnimalType type,
+      final int maxX,
+      final int maxY,
+      final GameRandom random,
+      final int x,
+      final int y,
+      final double orientation,
+      final double speed,
+      final int size,
+      final int score,
+      final boolean alive,
+      final int stepsAlive,
+      final int corrections,
+      final boolean avoiding) {
+    this.number = number;
+    animalType = type;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.random = random;
+    this.x = x;
+    this.y = y;
+    this.orientation = orientation;
+    quadrant = quadrant(orientation);
+    this.speed = speed;
+    this.size = size;
+    this.score = score;
+    this.alive = alive;
+    this.stepsAlive = stepsAlive;
+    this.corrections = corrections;
+    this.avoiding = avoiding;
+  }
+
   public void createAnimal() {
     x = random.nextInt(maxX - FROM_EDGE) + 15;
     y = random.nextInt(maxY - FROM_EDGE) + 15;
-    orientation = Math.random() * 2d * Math.PI;
+    orientation = random.nextDouble() * 2d * Math.PI;
     changeOrientation(0d); // fix quadrant
     correctStartPosition();
     alive = true;
@@ -72,12 +119,12 @@ public class Animal {
   public void step() {
     if (!alive || isGold()) return;
     stepsAlive += 1;
-    x += (int) (Math.cos(orientation) * speed);
-    y += (int) (Math.sin(orientation) * speed);
+    x += (int) (getDirectionX() * speed);
+    y += (int) (getDirectionY() * speed);
 
     // Add random rotation sometimes
     if (stepsAlive % 12 == 0 && !avoiding && !isPlayer()) {
-      changeOrientation(Math.random() / 2d);
+      changeOrientation(random.nextDouble() / 2d);
     }
   }
 
@@ -144,11 +191,33 @@ public class Animal {
     // fix bigger than 360 degrees or lower than 0 degrees
     if (orientation >= (Math.PI * 2d)) orientation -= (Math.PI * 2d);
     if (orientation < 0) orientation += (Math.PI * 2d);
+    quadrant = quadrant(orientation);
+  }
+
+  /** Cosine of the orientation. */
+  public double getDirectionX() {
+    updateDirection();
+    return directionX;
+  }
+
+  /** Sine of the orientation. */
+  public double getDirectionY() {
+    updateDirection();
+    return directionY;
+  }
+
+  private void updateDirection() {
+    if (directionOf == orientation) return;
+    directionX = Math.cos(orientation);
+    directionY = Math.sin(orientation);
+    directionOf = orientation;
+  }
 
-    if (orientation >= EAST && orientation < SOUTH) quadrant = 1;
-    else if (orientation >= SOUTH && orientation < WEST) quadrant = 2;
-    else if (orientation >= WEST && orientation < NORTH) quadrant = 3;
-    else quadrant = 4;
+  private static int quadrant(final double orientation) {
+    if (orientation >= EAST && orientation < SOUTH) return 1;
+    else if (orientation >= SOUTH && orientation < WEST) return 2;
+    else if (orientation >= WEST && orientation < NORTH) return 3;
+    else return 4;
   }
 
   public void kill() {
@@ -1,22 +1,40 @@
 package org.jacobjob.game.model;
 
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.Setter;
 
+/** Immutable copy of an animal, taken on the tick thread and safe to send from any thread. */
 @Getter
-@Setter
+@EqualsAndHashCode
+@AllArgsConstructor
 public class AnimalDTO {
-  private int x, y;
+  private final int x, y;
   private final int size, number;
   private final AnimalType animalType;
   private final boolean alive;
 
   public AnimalDTO(final Animal animal) {
-    x = animal.getX();
-    y = animal.getY();
+    this(animal, 0, 0);
+  }
+
+  /** Copy of the animal, with its position relative to the given origin. */
+  public AnimalDTO(final Animal animal, final int originX, final int originY) {
+    x = animal.getX() - originX;
+    y = animal.getY() - originY;
     size = animal.getSize();
     number = animal.getNumber();
     animalType = animal.getAnimalType();
     alive = animal.isAlive();
   }
+
+  /** Whether this is an unchanged copy of the animal, taken without an origin. */
+  public boolean isCopyOf(final Animal animal) {
+    return x == animal.getX()
+        && y == animal.getY()
+        && size == animal.getSize()
+        && number == animal.getNumber()
+        && animalType == animal.getAnimalType()
+        && alive == animal.isAlive();
+  }
 }
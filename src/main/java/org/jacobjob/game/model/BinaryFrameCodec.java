@@ -0,0 +1,88 @@
+package org.jacobjob.game.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of a {@link FrameDTO}, as an alternative for JSON. All numbers are little
+ * endian:
+ *
+ * <pre>
+ * header:  version (1 byte), flags (1 byte: bit 0 is keyframe), tick (8 bytes),
+ *          view port x, view port y, amount of animals, amount of removed (4 bytes each)
+ * animal:  number, x, y (4 bytes each), size (2 bytes),
+ *          type and alive (1 byte: bits 0-6 are the AnimalType ordinal, bit 7 is alive)
+ * removed: number (4 bytes)
+ * </pre>
+ */
+public final class BinaryFrameCodec {
+  public static final byte VERSION = 2;
+  public static final int HEADER_SIZE = 26;
+  public static final int ANIMAL_SIZE = 15;
+  public static final int REMOVED_SIZE = 4;
+
+  private static final int KEYFRAME = 1;
+  private static final int ALIVE = 0x80;
+  private static final int TYPE = 0x7F;
+  private static final AnimalType[] TYPES = AnimalType.values();
+
+  private BinaryFrameCodec() {}
+
+  public static byte[] encode(final FrameDTO frame) {
+    final List<AnimalDTO> animals = frame.getAnimals();
+    final List<Integer> removed = frame.getRemoved();
+    final ByteBuffer buffer =
+        ByteBuffer.allocate(
+                HEADER_SIZE + animals.size() * ANIMAL_SIZE + removed.size() * REMOVED_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(VERSION);
+    buffer.put((byte) (frame.isKeyframe() ? KEYFRAME : 0));
+    buffer.putLong(frame.getTick());
+    buffer.putInt(frame.getViewPortX());
+    buffer.putInt(frame.getViewPortY());
+    buffer.putInt(animals.size());
+    buffer.putInt(removed.size());
+    for (final AnimalDTO animal : animals) {
+      buffer.putInt(animal.getNumber());
+      buffer.putInt(animal.getX());
+      buffer.putInt(animal.getY());
+      buffer.putShort((short) animal.getSize());
+      buffer.put((byte) (animal.getAnimalType().ordinal() | (animal.isAlive() ? ALIVE : 0)));
+    }
+    for (final Integer number : removed) {
+      buffer.putInt(number);
+    }
+    return buffer.array();
+  }
+
+  public static FrameDTO decode(final byte[] bytes) {
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.get() != VERSION) {
+      throw new IllegalArgumentException("Unsupported binary frame version");
+    }
+    final boolean keyframe = (buffer.get() & KEYFRAME) != 0;
+    final long tick = buffer.getLong();
+    final int viewPortX = buffer.getInt();
+    final int viewPortY = buffer.getInt();
+    final int amountOfAnimals = buffer.getInt();
+    final int amountRemoved = buffer.getInt();
+    final List<AnimalDTO> animals = new ArrayList<>(amountOfAnimals);
+    for (int i = 0; i < amountOfAnimals; i++) {
+      final int number = buffer.getInt();
+      final int x = buffer.getInt();
+      final int y = buffer.getInt();
+      final int size = buffer.getShort();
+      final int typeAndAlive = buffer.get();
+      animals.add(
+          new AnimalDTO(
+              x, y, size, number, TYPES[typeAndAlive & TYPE], (typeAndAlive & ALIVE) != 0));
+    }
+    final List<Integer> removed = new ArrayList<>(amountRemoved);
+    for (int i = 0; i < amountRemoved; i++) {
+      removed.add(buffer.getInt());
+    }
+    return new FrameDTO(keyframe, tick, viewPortX, viewPortY, animals, removed);
+  }
+}
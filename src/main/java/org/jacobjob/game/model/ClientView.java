@@ -0,0 +1,70 @@
+package org.jacobjob.game.model;
+
+import lombok.Getter;
+
+/**
+ * What one client sees of a room: its own viewport, and the frames sent to its queue. The viewport
+ * follows the player, unless the client chose to look elsewhere.
+ */
+@Getter
+public class ClientView {
+  private final String sessionId;
+  private final String roomId;
+  private final WebSocketTopic topic;
+  private final FrameTracker frameTracker = new FrameTracker();
+  private volatile ViewPort lookAt = null;
+
+  /** Top left corner of a viewport on the board. */
+  public record ViewPort(int x, int y) {}
+
+  public ClientView(final String sessionId, final String roomId, final WebSocketTopic topic) {
+    this.sessionId = sessionId;
+    this.roomId = roomId;
+    this.topic = topic;
+  }
+
+  /** Look at a fixed part of the board, for example to spectate. */
+  public void lookAt(final int x, final int y) {
+    lookAt = new ViewPort(x, y);
+  }
+
+  /** Let the viewport follow the player again. */
+  public void follow() {
+    lookAt = null;
+  }
+
+  /**
+   * Create the next frame of the animals in this view, plus a margin so animals about to come into
+   * view are already known. Only the animals the grid finds around the view are looked at.
+   *
+   * @param grid the animals of the room by position, see {@link GameState#currentViewGrid}
+   * @return the frame to send, or null if nothing changed since the previous frame
+   */
+  public FrameDTO nextFrame(
+      final GameState state,
+      final SpatialGrid grid,
+      final int width,
+      final int height,
+      final int margin,
+      final int keyframeInterval) {
+    final ViewPort viewPort = lookAt;
+    final int viewPortX = viewPort == null ? state.viewPortX : viewPort.x();
+    final int viewPortY = viewPort == null ? state.viewPortY : viewPort.y();
+    final int fromX = viewPortX - margin;
+    final int toX = viewPortX + width + margin;
+    final int fromY = viewPortY - margin;
+    final int toY = viewPortY + height + margin;
+    final int found = grid.queryArea(fromX, fromY, toX, toY);
+    for (int i = 0; i < found; i++) {
+      final Animal animal = state.animals.get(grid.foundIndex(i));
+      if (animal.isAlive()
+          && animal.getX() >= fromX
+          && animal.getX() <= toX
+          && animal.getY() >= fromY
+          && animal.getY() <= toY) {
+        frameTracker.addVisible(animal);
+      }
+    }
+    return frameTracker.nextFrame(state.tick, viewPortX, viewPortY, keyframeInterval);
+  }
+}
@@ -0,0 +1,16 @@
+package org.jacobjob.game.model;
+
+/** How the animals that collide or come close within a tick are found. */
+public enum CollisionMode {
+  /**
+   * Each animal looks up the animals around it in a grid, so each pair is visited twice. Animals
+   * only collide when they overlap at the end of the tick.
+   */
+  GRID,
+  /**
+   * Sweep and prune along the x axis, in an order kept from tick to tick, visiting each pair once.
+   * Animals collide when they overlapped at any moment of the tick, so fast animals cannot pass
+   * through each other. Ignores the tick mode.
+   */
+  SWEEP
+}
@@ -0,0 +1,39 @@
+package org.jacobjob.game.model;
+
+/** Control codes clients send to steer the player and run the game. */
+public enum ControlCode {
+  LEFT("left"),
+  RIGHT("right"),
+  UP("up"),
+  DOWN("down"),
+  RESET("reset"),
+  PAUSE("pause");
+
+  private final String code;
+
+  ControlCode(final String code) {
+    this.code = code;
+  }
+
+  /** The code as clients send it. */
+  public String getCode() {
+    return code;
+  }
+
+  /**
+   * Find the control of a code as clients send it.
+   *
+   * @return the control, or null if the code is unknown
+   */
+  public static ControlCode of(final String code) {
+    return switch (code) {
+      case "left" -> LEFT;
+      case "right" -> RIGHT;
+      case "up" -> UP;
+      case "down" -> DOWN;
+      case "reset" -> RESET;
+      case "pause" -> PAUSE;
+      case null, default -> null;
+    };
+  }
+}
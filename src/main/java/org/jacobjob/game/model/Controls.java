@@ -0,0 +1,62 @@
+package org.jacobjob.game.model;
+
+import java.util.function.Consumer;
+
+/**
+ * Controls received for a room until the next tick, coalesced as they arrive: turns add up to a
+ * net turn, speed changes to a net speed change, two pauses cancel out and resets collapse into
+ * one. However many codes clients send, a tick applies only the net effect, and holding a key does
+ * not queue up work.
+ */
+public class Controls {
+  private int turns = 0;
+  private int speedChanges = 0;
+  private boolean pause = false;
+  private boolean reset = false;
+
+  public synchronized void offer(final ControlCode code) {
+    switch (code) {
+      case LEFT -> turns--;
+      case RIGHT -> turns++;
+      case UP -> speedChanges++;
+      case DOWN -> speedChanges--;
+      case PAUSE -> pause = !pause;
+      case RESET -> reset = true;
+    }
+  }
+
+  /** Whether the controls received so far have no net effect. */
+  public synchronized boolean isEmpty() {
+    return turns == 0 && speedChanges == 0 && !pause && !reset;
+  }
+
+  /**
+   * Hand over the net controls received so far, and start over. A pause and a reset come first,
+   * then the net turn and the net speed change, one control code per step. Handing over coalesced
+   * controls again gives the same controls, so a journal of them replays alike.
+   */
+  public void drain(final Consumer<ControlCode> consumer) {
+    final int netTurns;
+    final int netSpeedChanges;
+    final boolean togglePause;
+    final boolean resetBoard;
+    synchronized (this) {
+      netTurns = turns;
+      netSpeedChanges = speedChanges;
+      togglePause = pause;
+      resetBoard = reset;
+      turns = 0;
+      speedChanges = 0;
+      pause = false;
+      reset = false;
+    }
+    if (togglePause) consumer.accept(ControlCode.PAUSE);
+    if (resetBoard) consumer.accept(ControlCode.RESET);
+    for (int i = 0; i < Math.abs(netTurns); i++) {
+      consumer.accept(netTurns < 0 ? ControlCode.LEFT : ControlCode.RIGHT);
+    }
+    for (int i = 0; i < Math.abs(netSpeedChanges); i++) {
+      consumer.accept(netSpeedChanges < 0 ? ControlCode.DOWN : ControlCode.UP);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package org.jacobjob.game.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Visible animals of one tick, in board coordinates, with the view port to draw them in. A
+ * keyframe holds all visible animals; other frames only hold the animals that changed since the
+ * previous frame, and the numbers of the animals that are no longer visible. The tick tells clients
+ * when the frame was made, as not every tick is sent.
+ */
+@Getter
+@AllArgsConstructor
+public class FrameDTO {
+  private final boolean keyframe;
+  private final long tick;
+  private final int viewPortX, viewPortY;
+  private final List<AnimalDTO> animals;
+  private final List<Integer> removed;
+}
@@ -0,0 +1,116 @@
+package org.jacobjob.game.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/** Remembers what was sent in previous frames, so the next frame only holds the changes. */
+public class FrameTracker {
+  private final Map<Integer, AnimalDTO> sent = new HashMap<>();
+  private final List<AnimalDTO> visible = new ArrayList<>();
+  private final BitSet visibleNumbers = new BitSet();
+  private int viewPortX = -1;
+  private int viewPortY = -1;
+  private int framesSinceKeyframe = 0;
+  private volatile boolean keyframeRequested = true;
+  private final Runnable keyframeRequest = this::requestKeyframe;
+
+  /** Make the next frame a keyframe, for example because a new client subscribed. */
+  public void requestKeyframe() {
+    keyframeRequested = true;
+  }
+
+  /** {@link #requestKeyframe()} as one callback, the same each time, to run on a dropped frame. */
+  public Runnable keyframeRequest() {
+    return keyframeRequest;
+  }
+
+  /**
+   * Add a visible animal to the next frame. When the animal did not change since it was sent, the
+   * DTO sent before is reused instead of copying the animal again.
+   */
+  public void addVisible(final Animal animal) {
+    final AnimalDTO previous = sent.get(animal.getNumber());
+    visible.add(previous != null && previous.isCopyOf(animal) ? previous : new AnimalDTO(animal));
+  }
+
+  /**
+   * Create the next frame for the animals added with {@link #addVisible(Animal)}, and start
+   * collecting the animals of the frame after it.
+   *
+   * @return the frame to send, or null if nothing changed since the previous frame
+   */
+  public FrameDTO nextFrame(
+      final long tick, final int viewPortX, final int viewPortY, final int keyframeInterval) {
+    try {
+      return nextFrame(visible, tick, viewPortX, viewPortY, keyframeInterval);
+    } finally {
+      visible.clear();
+    }
+  }
+
+  /**
+   * Create the next frame for the visible animals. Only frames with content allocate: the animals
+   * sent before are compared in place.
+   *
+   * @return the frame to send, or null if nothing changed since the previous frame
+   */
+  public FrameDTO nextFrame(
+      final List<AnimalDTO> visible,
+      final long tick,
+      final int viewPortX,
+      final int viewPortY,
+      final int keyframeInterval) {
+    if (keyframeRequested || ++framesSinceKeyframe >= keyframeInterval) {
+      keyframeRequested = false;
+      framesSinceKeyframe = 0;
+      sent.clear();
+      for (int i = 0; i < visible.size(); i++) {
+        sent.put(visible.get(i).getNumber(), visible.get(i));
+      }
+      this.viewPortX = viewPortX;
+      this.viewPortY = viewPortY;
+      return new FrameDTO(true, tick, viewPortX, viewPortY, List.copyOf(visible), List.of());
+    }
+
+    List<AnimalDTO> changed = null;
+    visibleNumbers.clear();
+    for (int i = 0; i < visible.size(); i++) {
+      final AnimalDTO dto = visible.get(i);
+      visibleNumbers.set(dto.getNumber());
+      final AnimalDTO previous = sent.get(dto.getNumber());
+      if (previous != dto && !dto.equals(previous)) {
+        if (changed == null) changed = new ArrayList<>();
+        changed.add(dto);
+        sent.put(dto.getNumber(), dto);
+      }
+    }
+    List<Integer> removed = null;
+    if (sent.size() > visible.size()) {
+      removed = new ArrayList<>();
+      for (final Iterator<Integer> numbers = sent.keySet().iterator(); numbers.hasNext(); ) {
+        final Integer number = numbers.next();
+        if (!visibleNumbers.get(number)) {
+          removed.add(number);
+          numbers.remove();
+        }
+      }
+    }
+
+    final boolean moved = viewPortX != this.viewPortX || viewPortY != this.viewPortY;
+    if (changed == null && removed == null && !moved) return null;
+    this.viewPortX = viewPortX;
+    this.viewPortY = viewPortY;
+    return new FrameDTO(
+        false,
+        tick,
+        viewPortX,
+        viewPortY,
+        changed == null ? List.of() : Collections.unmodifiableList(changed),
+        removed == null ? List.of() : Collections.unmodifiableList(removed));
+  }
+}
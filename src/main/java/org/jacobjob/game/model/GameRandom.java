@@ -0,0 +1,38 @@
+package org.jacobjob.game.model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Seedable random generator (SplitMix64). Each board has one, and each animal gets its own split
+ * off from it, so a game replays exactly from its seed, also when animals move in parallel. The
+ * whole state is one long, so it can be saved and restored.
+ */
+public class GameRandom implements RandomGenerator {
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private long state;
+
+  public GameRandom(final long seed) {
+    state = seed;
+  }
+
+  @Override
+  public long nextLong() {
+    return mix64(state += GOLDEN_GAMMA);
+  }
+
+  /** New generator, independent of this one. */
+  public GameRandom split() {
+    return new GameRandom(nextLong());
+  }
+
+  public long getState() {
+    return state;
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,168 @@
+package org.jacobjob.game.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary snapshot of game states, to continue the games after a restart. A snapshot holds
+ * everything a tick reads, including the state of every random generator, so a restored room plays
+ * on exactly like the original would have. All numbers are little endian:
+ *
+ * <pre>
+ * header:  magic "AGSS" (4 bytes), version (1 byte), amount of rooms (4 bytes)
+ * room:    size of the room in bytes (4 bytes), room id length (2 bytes), room id (UTF-8),
+ *          board width, board height (4 bytes each), tick, seed, random state (8 bytes each),
+ *          highest animal number, dead animal counter, reset wait, game state,
+ *          view port x, view port y (4 bytes each),
+ *          flags (1 byte: bit 0 is pause, bit 1 is reset board, bit 2 has random),
+ *          index of the player or -1 when it was removed, amount of animals (4 bytes each)
+ * animal:  number (4 bytes), type and alive (1 byte: bits 0-6 are the AnimalType ordinal, bit 7 is
+ *          alive), x, y (4 bytes each), orientation, speed (8 bytes each), size, score, steps
+ *          alive, corrections (4 bytes each), avoiding (1 byte), random state (8 bytes)
+ * </pre>
+ */
+public final class GameSnapshotCodec {
+  public static final int MAGIC = 0x53534741;
+  public static final byte VERSION = 1;
+  public static final int HEADER_SIZE = 9;
+  public static final int ROOM_SIZE = 71;
+  public static final int ANIMAL_SIZE = 54;
+
+  private static final int PAUSE = 1;
+  private static final int RESET_BOARD = 2;
+  private static final int HAS_RANDOM = 4;
+  private static final int ALIVE = 0x80;
+  private static final int TYPE = 0x7F;
+  private static final AnimalType[] TYPES = AnimalType.values();
+
+  private GameSnapshotCodec() {}
+
+  public static void writeHeader(final ByteBuffer buffer, final int rooms) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.put(VERSION);
+    buffer.putInt(rooms);
+  }
+
+  /**
+   * Check the header of a snapshot.
+   *
+   * @return amount of rooms in the snapshot
+   */
+  public static int readHeader(final ByteBuffer buffer) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a game snapshot");
+    if (buffer.get() != VERSION) {
+      throw new IllegalArgumentException("Unsupported game snapshot version");
+    }
+    return buffer.getInt();
+  }
+
+  /** Room of a snapshot, including its size; only to be encoded between ticks of the room. */
+  public static byte[] encodeRoom(final GameState state) {
+    final byte[] roomId = state.roomId.getBytes(StandardCharsets.UTF_8);
+    final int size = ROOM_SIZE + roomId.length + state.animals.size() * ANIMAL_SIZE;
+    final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    final Animal first = state.animals.isEmpty() ? null : state.animals.getFirst();
+    buffer.putInt(size);
+    buffer.putShort((short) roomId.length);
+    buffer.put(roomId);
+    buffer.putInt(first == null ? 0 : first.getMaxX());
+    buffer.putInt(first == null ? 0 : first.getMaxY());
+    buffer.putLong(state.tick);
+    buffer.putLong(state.seed);
+    buffer.putLong(state.random == null ? 0 : state.random.getState());
+    buffer.putInt(state.highestAnimalNumber);
+    buffer.putInt(state.deadAnimalCounter);
+    buffer.putInt(state.resetWait);
+    buffer.putInt(state.gameState);
+    buffer.putInt(state.viewPortX);
+    buffer.putInt(state.viewPortY);
+    buffer.put(
+        (byte)
+            ((state.pause ? PAUSE : 0)
+                | (state.resetBoard ? RESET_BOARD : 0)
+                | (state.random != null ? HAS_RANDOM : 0)));
+    buffer.putInt(state.player == null ? -1 : state.animals.indexOf(state.player));
+    buffer.putInt(state.animals.size());
+    for (final Animal animal : state.animals) {
+      buffer.putInt(animal.getNumber());
+      buffer.put((byte) (animal.getAnimalType().ordinal() | (animal.isAlive() ? ALIVE : 0)));
+      buffer.putInt(animal.getX());
+      buffer.putInt(animal.getY());
+      buffer.putDouble(animal.getOrientation());
+      buffer.putDouble(animal.getSpeed());
+      buffer.putInt(animal.getSize());
+      buffer.putInt(animal.getScore());
+      buffer.putInt(animal.getStepsAlive());
+      buffer.putInt(animal.getCorrections());
+      buffer.put((byte) (animal.isAvoiding() ? 1 : 0));
+      buffer.putLong(animal.getRandom().getState());
+    }
+    return buffer.array();
+  }
+
+  /** Read the next room of a snapshot. */
+  public static GameState decodeRoom(final ByteBuffer buffer) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    final int start = buffer.position();
+    final int roomSize = buffer.getInt();
+    final byte[] roomId = new byte[buffer.getShort()];
+    buffer.get(roomId);
+    final GameState state = new GameState(new String(roomId, StandardCharsets.UTF_8));
+    final int maxX = buffer.getInt();
+    final int maxY = buffer.getInt();
+    state.tick = buffer.getLong();
+    state.seed = buffer.getLong();
+    final long randomState = buffer.getLong();
+    state.highestAnimalNumber = buffer.getInt();
+    state.deadAnimalCounter = buffer.getInt();
+    state.resetWait = buffer.getInt();
+    state.gameState = buffer.getInt();
+    state.viewPortX = buffer.getInt();
+    state.viewPortY = buffer.getInt();
+    final int flags = buffer.get();
+    state.pause = (flags & PAUSE) != 0;
+    state.resetBoard = (flags & RESET_BOARD) != 0;
+    state.random = (flags & HAS_RANDOM) != 0 ? new GameRandom(randomState) : null;
+    final int player = buffer.getInt();
+    final int amountOfAnimals = buffer.getInt();
+    for (int i = 0; i < amountOfAnimals; i++) {
+      final int number = buffer.getInt();
+      final int typeAndAlive = buffer.get();
+      final int x = buffer.getInt();
+      final int y = buffer.getInt();
+      final double orientation = buffer.getDouble();
+      final double speed = buffer.getDouble();
+      final int size = buffer.getInt();
+      final int score = buffer.getInt();
+      final int stepsAlive = buffer.getInt();
+      final int corrections = buffer.getInt();
+      final boolean avoiding = buffer.get() != 0;
+      final GameRandom random = new GameRandom(buffer.getLong());
+      state.animals.add(
+          new Animal(
+              number,
+              TYPES[typeAndAlive & TYPE],
+              maxX,
+              maxY,
+              random,
+              x,
+              y,
+              orientation,
+              speed,
+              size,
+              score,
+              (typeAndAlive & ALIVE) != 0,
+              stepsAlive,
+              corrections,
+              avoiding));
+    }
+    if (player >= 0) state.player = state.animals.get(player);
+    if (buffer.position() - start != roomSize) {
+      throw new IllegalArgumentException("Corrupt room " + state.roomId + " in game snapshot");
+    }
+    return state;
+  }
+}
@@ -2,18 +2,101 @@ package org.jacobjob.game.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import lombok.Data;
 
 @Data
 public class GameState {
+  public static final String DEFAULT_ROOM = "main";
+  private static final int VIEW_GRID_CELL_SIZE = 128;
+
+  public final String roomId;
   public int deadAnimalCounter = 0;
   public int highestAnimalNumber = 1;
   public final List<Animal> animals = new ArrayList<>();
+  public final SpatialGrid spatialGrid = new SpatialGrid();
+  /** Animals by position at {@link #viewGridTick}, shared by the views of all clients. */
+  public final SpatialGrid viewGrid = new SpatialGrid();
+  public long viewGridTick = -1;
+  /** Gold and the player, for animals seeking them from afar. */
+  public final TargetGrid targetGrid = new TargetGrid();
+  public final SweepAndPrune sweepAndPrune = new SweepAndPrune();
+  public final FrameTracker frameTracker = new FrameTracker();
   public Animal player = null;
+  /**
+   * Animals on the board by {@link AnimalType}, as counted at the end of the last tick. Read by
+   * other threads, so only complete counts are published here.
+   */
+  public final AtomicIntegerArray animalCounts = new AtomicIntegerArray(AnimalType.values().length);
+  /** Animals counted so far by the tick, before they are published. */
+  public final int[] countingAnimals = new int[AnimalType.values().length];
+  /**
+   * Steps each animal takes in the current tick, by index in the animal list: 1 near the viewport,
+   * more for far animals due to move, and 0 for far animals that skip the tick.
+   */
+  public int[] animalSteps = new int[0];
+  /**
+   * Animals close to each animal, by index in the animal list, as found in parallel: the first
+   * {@code candidateCounts[i]} entries of row i. Rows are reused from tick to tick.
+   */
+  public int[][] candidates = new int[0][];
+  public int[] candidateCounts = new int[0];
+  /** Controls received from clients, coalesced until they are applied by the next tick. */
+  public final Controls controls = new Controls();
   public boolean resetBoard = true;
+  public int resetWait = 0;
+  public long tick = 0;
+  /** Seed of the current board, and the generator the animals of the board are split off from. */
+  public long seed = 0;
+  public GameRandom random = null;
   public int gameState = 0;
 
   public int viewPortX = 0;
   public int viewPortY = 0;
   public boolean pause = true;
+
+  /** Journal segment the room was last written to in full, see the event journal. */
+  public int journalSegment = -1;
+
+  /**
+   * The animals by position at this tick, for finding the animals in the view of each client. Built
+   * by the first view that needs it in a tick; the collision grid is not used, as frames are sent
+   * before the collisions of the tick.
+   */
+  public SpatialGrid currentViewGrid(final int maxX, final int maxY) {
+    if (viewGridTick != tick) {
+      viewGrid.rebuild(animals, maxX, maxY, VIEW_GRID_CELL_SIZE);
+      viewGridTick = tick;
+    }
+    return viewGrid;
+  }
+
+  /**
+   * Hash of everything a tick changes, to tell whether a replayed game is still the same as the
+   * original.
+   */
+  public long checksum() {
+    long hash = mix(tick, resetWait);
+    hash = mix(hash, random == null ? 0 : random.getState());
+    hash = mix(hash, ((long) viewPortX << 32) | (viewPortY & 0xFFFFFFFFL));
+    hash = mix(hash, (pause ? 1 : 0) | (resetBoard ? 2 : 0));
+    for (int i = 0; i < animals.size(); i++) {
+      final Animal animal = animals.get(i);
+      hash = mix(hash, ((long) animal.getNumber() << 32) | (animal.isAlive() ? 1 : 0));
+      hash = mix(hash, ((long) animal.getX() << 32) | (animal.getY() & 0xFFFFFFFFL));
+      hash = mix(hash, Double.doubleToLongBits(animal.getOrientation()));
+      hash = mix(hash, Double.doubleToLongBits(animal.getSpeed()));
+      hash = mix(hash, ((long) animal.getSize() << 32) | (animal.getScore() & 0xFFFFFFFFL));
+      hash = mix(hash, animal.getRandom().getState());
+    }
+    return hash;
+  }
+
+  /** Next hash, mixed like a {@link GameRandom} step. */
+  private static long mix(final long hash, final long value) {
+    long z = hash + 0x9e3779b97f4a7c15L ^ value;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
 }
@@ -0,0 +1,200 @@
+package org.jacobjob.game.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Records of the event journal: everything needed to replay the rooms tick by tick, and to check
+ * that the replay is the same as the original game. A segment of the journal starts with a header
+ * holding the settings that change how a game plays, followed by records. All numbers are little
+ * endian:
+ *
+ * <pre>
+ * header:  magic "AGJL" (4 bytes), version (1 byte),
+ *          board width, board height, amount of snakes, tick rate (4 bytes each),
+ *          trigonometry (1 byte: Trigonometry ordinal),
+ *          LOD distance, LOD interval, seek distance (4 bytes each),
+ *          collision mode (1 byte: CollisionMode ordinal)
+ * record:  type (1 byte), room id length (1 byte), room id (ASCII), and then by type:
+ * start:   size of the room (4 bytes), room as in a {@link GameSnapshotCodec} snapshot
+ * board:   seed of the new board (8 bytes)
+ * control: length (1 byte), control code (UTF-8, at most 255 bytes)
+ * tick:    tick of the room, checksum of the room (8 bytes each)
+ * </pre>
+ *
+ * A room is written in full when it is first seen in a segment; after that, its controls, new
+ * boards and ticks are written in the order the thread ticking the room applied them.
+ */
+public final class JournalCodec {
+  public static final int MAGIC = 0x4c4a4741;
+  public static final byte VERSION = 4;
+  public static final int HEADER_SIZE = 35;
+  public static final int MAX_CONTROL_LENGTH = 255;
+
+  private static final byte START = 1;
+  private static final byte BOARD = 2;
+  private static final byte CONTROL = 3;
+  private static final byte TICK = 4;
+  private static final Trigonometry[] TRIGONOMETRIES = Trigonometry.values();
+  private static final CollisionMode[] COLLISION_MODES = CollisionMode.values();
+
+  private JournalCodec() {}
+
+  /** Settings of the game a segment was written by. */
+  public record Header(
+      int boardWidth,
+      int boardHeight,
+      int amountOfSnakes,
+      int tickRate,
+      Trigonometry trigonometry,
+      int lodDistance,
+      int lodInterval,
+      int seekDistance,
+      CollisionMode collisionMode) {}
+
+  /** Receives the records read from a segment. */
+  public interface Listener {
+    void start(String roomId, GameState state);
+
+    void board(String roomId, long seed);
+
+    void control(String roomId, String controlCode);
+
+    void tick(String roomId, long tick, long checksum);
+  }
+
+  public static void writeHeader(final ByteBuffer buffer, final Header header) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.put(VERSION);
+    buffer.putInt(header.boardWidth());
+    buffer.putInt(header.boardHeight());
+    buffer.putInt(header.amountOfSnakes());
+    buffer.putInt(header.tickRate());
+    buffer.put((byte) header.trigonometry().ordinal());
+    buffer.putInt(header.lodDistance());
+    buffer.putInt(header.lodInterval());
+    buffer.putInt(header.seekDistance());
+    buffer.put((byte) header.collisionMode().ordinal());
+  }
+
+  public static Header readHeader(final ByteBuffer buffer) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a game journal");
+    if (buffer.get() != VERSION) {
+      throw new IllegalArgumentException("Unsupported game journal version");
+    }
+    return new Header(
+        buffer.getInt(),
+        buffer.getInt(),
+        buffer.getInt(),
+        buffer.getInt(),
+        TRIGONOMETRIES[buffer.get()],
+        buffer.getInt(),
+        buffer.getInt(),
+        buffer.getInt(),
+        COLLISION_MODES[buffer.get()]);
+  }
+
+  public static int startSize(final String roomId, final byte[] room) {
+    return 2 + roomId.length() + 4 + room.length;
+  }
+
+  public static void writeStart(final ByteBuffer buffer, final String roomId, final byte[] room) {
+    writeRecord(buffer, START, roomId);
+    buffer.putInt(room.length);
+    buffer.put(room);
+  }
+
+  public static int boardSize(final String roomId) {
+    return 2 + roomId.length() + 8;
+  }
+
+  public static void writeBoard(final ByteBuffer buffer, final String roomId, final long seed) {
+    writeRecord(buffer, BOARD, roomId);
+    buffer.putLong(seed);
+  }
+
+  /** Control code as written, cut off at {@link #MAX_CONTROL_LENGTH} bytes. */
+  public static byte[] controlBytes(final String controlCode) {
+    final byte[] bytes = controlCode.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length <= MAX_CONTROL_LENGTH) return bytes;
+    final byte[] cut = new byte[MAX_CONTROL_LENGTH];
+    System.arraycopy(bytes, 0, cut, 0, MAX_CONTROL_LENGTH);
+    return cut;
+  }
+
+  public static int controlSize(final String roomId, final byte[] controlCode) {
+    return 2 + roomId.length() + 1 + controlCode.length;
+  }
+
+  public static void writeControl(
+      final ByteBuffer buffer, final String roomId, final byte[] controlCode) {
+    writeRecord(buffer, CONTROL, roomId);
+    buffer.put((byte) controlCode.length);
+    buffer.put(controlCode);
+  }
+
+  public static int tickSize(final String roomId) {
+    return 2 + roomId.length() + 16;
+  }
+
+  public static void writeTick(
+      final ByteBuffer buffer, final String roomId, final long tick, final long checksum) {
+    writeRecord(buffer, TICK, roomId);
+    buffer.putLong(tick);
+    buffer.putLong(checksum);
+  }
+
+  /** Room ids only hold ASCII characters, so they are written without encoding. */
+  private static void writeRecord(final ByteBuffer buffer, final byte type, final String roomId) {
+    buffer.put(type);
+    buffer.put((byte) roomId.length());
+    for (int i = 0; i < roomId.length(); i++) {
+      buffer.put((byte) roomId.charAt(i));
+    }
+  }
+
+  /**
+   * Read the records after the header, up to the end of the buffer.
+   *
+   * @return false if the last record was cut off, for example by a crash while writing it
+   */
+  public static boolean read(final ByteBuffer buffer, final Listener listener) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      try {
+        readRecord(buffer, listener);
+      } catch (final BufferUnderflowException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void readRecord(final ByteBuffer buffer, final Listener listener) {
+    final byte type = buffer.get();
+    final byte[] id = new byte[buffer.get() & 0xFF];
+    buffer.get(id);
+    final String roomId = new String(id, StandardCharsets.US_ASCII);
+    switch (type) {
+      case START -> {
+        final int size = buffer.getInt();
+        if (size > buffer.remaining()) throw new BufferUnderflowException();
+        final ByteBuffer room = buffer.slice(buffer.position(), size);
+        buffer.position(buffer.position() + size);
+        listener.start(roomId, GameSnapshotCodec.decodeRoom(room));
+      }
+      case BOARD -> listener.board(roomId, buffer.getLong());
+      case CONTROL -> {
+        final byte[] controlCode = new byte[buffer.get() & 0xFF];
+        buffer.get(controlCode);
+        listener.control(roomId, new String(controlCode, StandardCharsets.UTF_8));
+      }
+      case TICK -> listener.tick(roomId, buffer.getLong(), buffer.getLong());
+      default -> throw new IllegalArgumentException("Unknown journal record type " + type);
+    }
+  }
+}
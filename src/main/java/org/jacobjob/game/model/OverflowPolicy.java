@@ -0,0 +1,14 @@
+package org.jacobjob.game.model;
+
+/**
+ * What to do with a message for a destination whose outbound queue is full. Frames are not
+ * dropped by this policy: a full frame queue is emptied, and the next frame is a keyframe.
+ */
+public enum OverflowPolicy {
+  /** Drop the oldest queued message, to make room for the new one. */
+  DROP_OLDEST,
+  /** Drop the new message. */
+  DROP_NEWEST,
+  /** Drop all queued messages: only the new one is still worth sending. */
+  COALESCE
+}
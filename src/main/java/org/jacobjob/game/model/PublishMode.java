@@ -0,0 +1,9 @@
+package org.jacobjob.game.model;
+
+/** How animal positions are sent to the browser. */
+public enum PublishMode {
+  /** One message per animal, on the snakes and police topics. */
+  ANIMAL,
+  /** One message per tick with all visible animals, on the frame topic. */
+  FRAME
+}
@@ -0,0 +1,153 @@
+package org.jacobjob.game.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over the board, used to find animals near a position without scanning every
+ * animal. Cells hold indexes into the animal list, and query results are returned in list order,
+ * so callers visit neighbours in the same order as a full scan would.
+ */
+public class SpatialGrid {
+  private int cellSize = 1;
+  private int columns = 0;
+  private int rows = 0;
+  private int[][] cells = new int[0][];
+  private int[] cellCounts = new int[0];
+  private List<Animal> animals = List.of();
+  private final Neighbours found = new Neighbours();
+  private int moves = 0;
+
+  /** Indexes in the animal list found by a query, in list order. */
+  public static class Neighbours {
+    private int[] indexes = new int[64];
+    private int size = 0;
+
+    public int size() {
+      return size;
+    }
+
+    public int get(final int i) {
+      return indexes[i];
+    }
+  }
+
+  /** Put all animals in their cells; positions are clamped to the board. */
+  public void rebuild(
+      final List<Animal> animals, final int maxX, final int maxY, final int cellSize) {
+    this.animals = animals;
+    this.cellSize = Math.max(1, cellSize);
+    final int newColumns = maxX / this.cellSize + 1;
+    final int newRows = maxY / this.cellSize + 1;
+    if (newColumns != columns || newRows != rows) {
+      columns = newColumns;
+      rows = newRows;
+      cells = new int[columns * rows][];
+      cellCounts = new int[columns * rows];
+    } else {
+      Arrays.fill(cellCounts, 0);
+    }
+    for (int i = 0; i < animals.size(); i++) {
+      final Animal animal = animals.get(i);
+      add(cellOf(animal.getX(), animal.getY()), i);
+    }
+  }
+
+  /** Move an animal to the cell of its current position, after it was relocated. */
+  public void move(final Animal animal, final int oldX, final int oldY) {
+    moves++;
+    final int oldCell = cellOf(oldX, oldY);
+    final int newCell = cellOf(animal.getX(), animal.getY());
+    if (oldCell == newCell) return;
+    final int[] entries = cells[oldCell];
+    for (int i = 0; i < cellCounts[oldCell]; i++) {
+      if (animals.get(entries[i]) == animal) {
+        final int index = entries[i];
+        entries[i] = entries[--cellCounts[oldCell]];
+        add(newCell, index);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Find all animals in cells overlapping the square of {@code distance} around (x, y). The result
+   * is a superset of the animals within distance; read it with {@link #foundIndex(int)}. Only for
+   * use by one thread at a time, see {@link #query(int, int, int, Neighbours)} otherwise.
+   *
+   * @return amount of animals found
+   */
+  public int query(final int x, final int y, final int distance) {
+    return query(x, y, distance, found).size();
+  }
+
+  /** Index in the animal list of the i-th animal found by the last query. */
+  public int foundIndex(final int i) {
+    return found.get(i);
+  }
+
+  /** Like {@link #query(int, int, int)}, with the result put in the given neighbours. */
+  public Neighbours query(final int x, final int y, final int distance, final Neighbours into) {
+    return queryArea(x - distance, y - distance, x + distance, y + distance, into);
+  }
+
+  /**
+   * Like {@link #query(int, int, int)}, for the animals in cells overlapping the rectangle from
+   * (fromX, fromY) to (toX, toY).
+   */
+  public int queryArea(final int fromX, final int fromY, final int toX, final int toY) {
+    return queryArea(fromX, fromY, toX, toY, found).size();
+  }
+
+  private Neighbours queryArea(
+      final int fromX, final int fromY, final int toX, final int toY, final Neighbours into) {
+    final int fromColumn = column(fromX);
+    final int toColumn = column(toX);
+    final int fromRow = row(fromY);
+    final int toRow = row(toY);
+    int amount = 0;
+    for (int row = fromRow; row <= toRow; row++) {
+      for (int column = fromColumn; column <= toColumn; column++) {
+        final int cell = row * columns + column;
+        final int count = cellCounts[cell];
+        if (count == 0) continue;
+        if (amount + count > into.indexes.length) {
+          into.indexes =
+              Arrays.copyOf(into.indexes, Math.max(into.indexes.length * 2, amount + count));
+        }
+        System.arraycopy(cells[cell], 0, into.indexes, amount, count);
+        amount += count;
+      }
+    }
+    Arrays.sort(into.indexes, 0, amount);
+    into.size = amount;
+    return into;
+  }
+
+  /** Amount of moves since the grid was created; tells whether earlier query results are stale. */
+  public int getMoves() {
+    return moves;
+  }
+
+  private void add(final int cell, final int index) {
+    int[] entries = cells[cell];
+    if (entries == null) {
+      entries = cells[cell] = new int[8];
+    } else if (cellCounts[cell] == entries.length) {
+      entries = cells[cell] = Arrays.copyOf(entries, entries.length * 2);
+    }
+    entries[cellCounts[cell]++] = index;
+  }
+
+  private int cellOf(final int x, final int y) {
+    return row(y) * columns + column(x);
+  }
+
+  private int column(final int x) {
+    return Math.clamp(Math.floorDiv(x, cellSize), 0, columns - 1);
+  }
+
+  private int row(final int y) {
+    return Math.clamp(Math.floorDiv(y, cellSize), 0, rows - 1);
+  }
+}
@@ -0,0 +1,249 @@
+package org.jacobjob.game.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Broad phase finding the pairs of animals that may touch within a tick. Each animal covers the
+ * x range it moved over in the tick, widened by a reach; the animals are sorted by the start of
+ * that range, and animal number on a tie, and a pair is found when the ranges overlap on both
+ * axes. Each pair is found once. As the numbers break the ties, the pairs come in an order set by
+ * the animals alone, so a room restored from a snapshot finds them in the same order.
+ *
+ * <p>The order is kept from tick to tick by animal number, and sorted by insertion sort: animals
+ * only move a little per tick, so the order is almost sorted already and sorting costs about one
+ * pass. Animals not seen before are added at the end.
+ */
+public class SweepAndPrune {
+  private int generation = 0;
+  private int[] seen = new int[0];
+  private int[] taken = new int[0];
+  private int[] indexOfNumber = new int[0];
+
+  private int count = 0;
+  private int[] order = new int[0];
+  private int[] numbers = new int[0];
+  private int[] minX = new int[0];
+  private int[] maxX = new int[0];
+  private int[] minY = new int[0];
+  private int[] maxY = new int[0];
+  private boolean started = false;
+  private int startCount = 0;
+  private int[] startX = new int[0];
+  private int[] startY = new int[0];
+
+  private int pairCount = 0;
+  private int[] pairs = new int[128];
+  private boolean[] close = new boolean[0];
+
+  /**
+   * Remember where the animals start the tick, by index in the animal list. Without this, the
+   * next sweep takes the animals to have stood still.
+   */
+  public void start(final List<Animal> animals) {
+    started = true;
+    startCount = animals.size();
+    if (startX.length < startCount) {
+      startX = new int[grow(startX.length, startCount)];
+      startY = new int[startX.length];
+    }
+    for (int i = 0; i < startCount; i++) {
+      startX[i] = animals.get(i).getX();
+      startY[i] = animals.get(i).getY();
+    }
+  }
+
+  /** Position of an animal at the start of the tick of the last sweep. */
+  public int startX(final int index, final Animal animal) {
+    return index < startCount ? startX[index] : animal.getX();
+  }
+
+  public int startY(final int index, final Animal animal) {
+    return index < startCount ? startY[index] : animal.getY();
+  }
+
+  /**
+   * Find the pairs of animals whose paths in this tick, widened by the reach, overlap. Pairs are
+   * read with {@link #pairCount()}, {@link #first(int)} and {@link #second(int)}, as indexes in
+   * the animal list, in sweep order. Start positions are only used by the sweep right after them.
+   */
+  public void sweep(final List<Animal> animals, final int reach) {
+    if (!started) startCount = 0;
+    started = false;
+    order(animals);
+    for (int k = 0; k < count; k++) {
+      final int index = order[k];
+      final Animal animal = animals.get(index);
+      numbers[k] = animal.getNumber();
+      minX[k] = Math.min(animal.getX(), startX(index, animal));
+      maxX[k] = Math.max(animal.getX(), startX(index, animal));
+      minY[k] = Math.min(animal.getY(), startY(index, animal));
+      maxY[k] = Math.max(animal.getY(), startY(index, animal));
+    }
+    if (close.length < animals.size()) close = new boolean[grow(close.length, animals.size())];
+    Arrays.fill(close, false);
+    insertionSort();
+    pairCount = 0;
+    for (int k = 0; k < count; k++) {
+      final int toX = maxX[k] + reach;
+      for (int m = k + 1; m < count && minX[m] <= toX; m++) {
+        if (minY[m] <= maxY[k] + reach && minY[k] <= maxY[m] + reach) addPair(order[k], order[m]);
+      }
+    }
+    // Keep the order for the next sweep by number, as indexes change when animals are removed
+    System.arraycopy(numbers, 0, order, 0, count);
+  }
+
+  /** Mark an animal as having another one close by in this tick. */
+  public void markClose(final int index) {
+    close[index] = true;
+  }
+
+  public boolean isClose(final int index) {
+    return close[index];
+  }
+
+  public int pairCount() {
+    return pairCount;
+  }
+
+  public int first(final int pair) {
+    return pairs[2 * pair];
+  }
+
+  public int second(final int pair) {
+    return pairs[2 * pair + 1];
+  }
+
+  /**
+   * Whether two squares of the given size, moving in a straight line from their start to their
+   * end position over the tick, overlap at any moment. At the end of the tick this is the same as
+   * {@code |dx| < size && |dy| < size}.
+   */
+  public static boolean sweptOverlap(
+      final int fromX,
+      final int fromY,
+      final int toX,
+      final int toY,
+      final int otherFromX,
+      final int otherFromY,
+      final int otherToX,
+      final int otherToY,
+      final int size) {
+    // Movement of the one relative to the other
+    final double dx = fromX - otherFromX;
+    final double dy = fromY - otherFromY;
+    final double vx = (toX - otherToX) - dx;
+    final double vy = (toY - otherToY) - dy;
+    double enter = 0;
+    double exit = 1;
+    if (vx == 0) {
+      if (Math.abs(dx) >= size) return false;
+    } else {
+      final double t1 = (-size - dx) / vx;
+      final double t2 = (size - dx) / vx;
+      enter = Math.max(enter, Math.min(t1, t2));
+      exit = Math.min(exit, Math.max(t1, t2));
+    }
+    if (vy == 0) {
+      if (Math.abs(dy) >= size) return false;
+    } else {
+      final double t1 = (-size - dy) / vy;
+      final double t2 = (size - dy) / vy;
+      enter = Math.max(enter, Math.min(t1, t2));
+      exit = Math.min(exit, Math.max(t1, t2));
+    }
+    return enter < exit;
+  }
+
+  /** Put the animals in the order of the previous sweep, followed by the new animals. */
+  private void order(final List<Animal> animals) {
+    generation++;
+    final int size = animals.size();
+    int maxNumber = 0;
+    for (int i = 0; i < size; i++) {
+      maxNumber = Math.max(maxNumber, animals.get(i).getNumber());
+    }
+    if (seen.length <= maxNumber) {
+      final int length = grow(seen.length, maxNumber + 1);
+      seen = Arrays.copyOf(seen, length);
+      taken = Arrays.copyOf(taken, length);
+      indexOfNumber = Arrays.copyOf(indexOfNumber, length);
+    }
+    if (order.length < size) {
+      final int length = grow(order.length, size);
+      order = Arrays.copyOf(order, length);
+      numbers = new int[length];
+      minX = new int[length];
+      maxX = new int[length];
+      minY = new int[length];
+      maxY = new int[length];
+    }
+    for (int i = 0; i < size; i++) {
+      final int number = animals.get(i).getNumber();
+      seen[number] = generation;
+      indexOfNumber[number] = i;
+    }
+    // The previous order holds animal numbers; turn it into indexes of animals still there
+    int kept = 0;
+    for (int k = 0; k < count; k++) {
+      final int number = order[k];
+      if (number < seen.length && seen[number] == generation && taken[number] != generation) {
+        taken[number] = generation;
+        order[kept++] = indexOfNumber[number];
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      final int number = animals.get(i).getNumber();
+      if (taken[number] != generation) {
+        taken[number] = generation;
+        order[kept++] = i;
+      }
+    }
+    count = kept;
+  }
+
+  /** Sort the entries by the start of their x range, and by animal number on a tie. */
+  private void insertionSort() {
+    for (int k = 1; k < count; k++) {
+      if (!isAfter(k - 1, minX[k], numbers[k])) continue;
+      final int index = order[k];
+      final int number = numbers[k];
+      final int fromX = minX[k];
+      final int toX = maxX[k];
+      final int fromY = minY[k];
+      final int toY = maxY[k];
+      int m = k - 1;
+      while (m >= 0 && isAfter(m, fromX, number)) {
+        order[m + 1] = order[m];
+        numbers[m + 1] = numbers[m];
+        minX[m + 1] = minX[m];
+        maxX[m + 1] = maxX[m];
+        minY[m + 1] = minY[m];
+        maxY[m + 1] = maxY[m];
+        m--;
+      }
+      order[m + 1] = index;
+      numbers[m + 1] = number;
+      minX[m + 1] = fromX;
+      maxX[m + 1] = toX;
+      minY[m + 1] = fromY;
+      maxY[m + 1] = toY;
+    }
+  }
+
+  private boolean isAfter(final int entry, final int fromX, final int number) {
+    return minX[entry] > fromX || (minX[entry] == fromX && numbers[entry] > number);
+  }
+
+  private void addPair(final int first, final int second) {
+    if (2 * pairCount + 2 > pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+    pairs[2 * pairCount] = first;
+    pairs[2 * pairCount + 1] = second;
+    pairCount++;
+  }
+
+  private static int grow(final int length, final int needed) {
+    return Math.max(needed, length * 2);
+  }
+}
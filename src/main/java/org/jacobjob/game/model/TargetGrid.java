@@ -0,0 +1,140 @@
+package org.jacobjob.game.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Grid over the board holding only the targets animals seek: gold and the player. The cells are
+ * sized so each holds about one target, and the nearest target of a type is found by searching
+ * rings of cells around a position, from the inside out, until no ring left can hold a target
+ * closer than the one found. The cost of a query depends on the density of the targets, not on
+ * how many there are.
+ */
+public class TargetGrid {
+  private static final int MIN_CELL_SIZE = 32;
+
+  private int cellSize = MIN_CELL_SIZE;
+  private int columns = 0;
+  private int rows = 0;
+  private Animal[][] cells = new Animal[0][];
+  private int[] cellCounts = new int[0];
+
+  private static boolean isTarget(final Animal animal) {
+    return animal.isGold() || animal.isPlayer();
+  }
+
+  /** Put the live targets of the animals in their cells. */
+  public void rebuild(final List<Animal> animals, final int maxX, final int maxY) {
+    int targets = 0;
+    for (int i = 0; i < animals.size(); i++) {
+      if (isTarget(animals.get(i))) targets++;
+    }
+    final int size =
+        Math.max(MIN_CELL_SIZE, (int) Math.sqrt((double) maxX * maxY / Math.max(1, targets)));
+    final int newColumns = maxX / size + 1;
+    final int newRows = maxY / size + 1;
+    if (size != cellSize || newColumns != columns || newRows != rows) {
+      cellSize = size;
+      columns = newColumns;
+      rows = newRows;
+      cells = new Animal[columns * rows][];
+      cellCounts = new int[columns * rows];
+    } else {
+      // Let go of the targets of the previous tick, which may have died since
+      for (int cell = 0; cell < cells.length; cell++) {
+        if (cellCounts[cell] > 0) Arrays.fill(cells[cell], 0, cellCounts[cell], null);
+      }
+      Arrays.fill(cellCounts, 0);
+    }
+    for (int i = 0; i < animals.size(); i++) {
+      final Animal animal = animals.get(i);
+      if (isTarget(animal) && animal.isAlive()) add(cellOf(animal.getX(), animal.getY()), animal);
+    }
+  }
+
+  /** Move a target to the cell of its current position, after it was relocated. */
+  public void move(final Animal target, final int oldX, final int oldY) {
+    if (columns == 0) return;
+    final int oldCell = cellOf(oldX, oldY);
+    final int newCell = cellOf(target.getX(), target.getY());
+    if (oldCell == newCell) return;
+    final Animal[] entries = cells[oldCell];
+    for (int i = 0; i < cellCounts[oldCell]; i++) {
+      if (entries[i] == target) {
+        entries[i] = entries[--cellCounts[oldCell]];
+        entries[cellCounts[oldCell]] = null;
+        add(newCell, target);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Find the live target of a type closest to (x, y), within the given distance. Of targets at the
+   * same distance, the one with the lowest number is found.
+   *
+   * @return the target, or null if there is none within distance
+   */
+  public Animal nearest(final int x, final int y, final AnimalType type, final int maxDistance) {
+    if (columns == 0) return null;
+    final int column = column(x);
+    final int row = row(y);
+    final int maxRing = maxDistance / cellSize + 1;
+    final long maxSquared = (long) maxDistance * maxDistance;
+    Animal best = null;
+    long bestSquared = Long.MAX_VALUE;
+    for (int ring = 0; ring <= maxRing; ring++) {
+      // Targets in this ring are at least (ring - 1) cells away
+      final long ringDistance = (long) Math.max(0, ring - 1) * cellSize;
+      if (ringDistance * ringDistance > Math.min(bestSquared, maxSquared)) break;
+      if (column - ring < 0 && row - ring < 0 && column + ring >= columns && row + ring >= rows) {
+        break;
+      }
+      for (int r = row - ring; r <= row + ring; r++) {
+        if (r < 0 || r >= rows) continue;
+        final boolean edge = r == row - ring || r == row + ring;
+        final int step = edge || ring == 0 ? 1 : 2 * ring;
+        for (int c = column - ring; c <= column + ring; c += step) {
+          if (c < 0 || c >= columns) continue;
+          final int cell = r * columns + c;
+          final Animal[] entries = cells[cell];
+          for (int i = 0; i < cellCounts[cell]; i++) {
+            final Animal target = entries[i];
+            if (target.getAnimalType() != type || !target.isAlive()) continue;
+            final long dx = target.getX() - x;
+            final long dy = target.getY() - y;
+            final long squared = dx * dx + dy * dy;
+            if (squared < bestSquared
+                || squared == bestSquared && target.getNumber() < best.getNumber()) {
+              best = target;
+              bestSquared = squared;
+            }
+          }
+        }
+      }
+    }
+    return bestSquared <= maxSquared ? best : null;
+  }
+
+  private void add(final int cell, final Animal target) {
+    Animal[] entries = cells[cell];
+    if (entries == null) {
+      entries = cells[cell] = new Animal[4];
+    } else if (cellCounts[cell] == entries.length) {
+      entries = cells[cell] = Arrays.copyOf(entries, entries.length * 2);
+    }
+    entries[cellCounts[cell]++] = target;
+  }
+
+  private int cellOf(final int x, final int y) {
+    return row(y) * columns + column(x);
+  }
+
+  private int column(final int x) {
+    return Math.clamp(Math.floorDiv(x, cellSize), 0, columns - 1);
+  }
+
+  private int row(final int y) {
+    return Math.clamp(Math.floorDiv(y, cellSize), 0, rows - 1);
+  }
+}
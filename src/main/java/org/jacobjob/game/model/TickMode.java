@@ -0,0 +1,12 @@
+package org.jacobjob.game.model;
+
+/** How the animals are updated within a tick. */
+public enum TickMode {
+  /** One animal after the other, on the thread ticking the room. */
+  SEQUENTIAL,
+  /**
+   * Moving and finding close animals in parallel, then applying kills, scores and orientation
+   * changes one animal after the other. Gives exactly the same result as sequential.
+   */
+  PARALLEL
+}
@@ -0,0 +1,28 @@
+package org.jacobjob.game.model;
+
+/** Parts of a game tick, timed separately. */
+public enum TickPhase {
+  /** Moving the animals one step. */
+  STEP("step"),
+  /** Turning animals away from close edges. */
+  SAFE_GUARD_EDGES("safe-guard-edges"),
+  /** Killing animals that left the board. */
+  VERIFY_EDGES("verify-edges"),
+  /** Building and handing over the messages for the clients. */
+  UPDATE_ANIMALS("update-animals"),
+  /** Finding close animals, and applying collisions and avoidance. */
+  FIND_CLOSE_ANIMALS("find-close-animals"),
+  /** Removing dead animals and adding new ones. */
+  HANDLE_DEAD_ANIMALS("handle-dead-animals");
+
+  private final String tag;
+
+  TickPhase(final String tag) {
+    this.tag = tag;
+  }
+
+  /** Value of the phase tag of the metrics. */
+  public String getTag() {
+    return tag;
+  }
+}
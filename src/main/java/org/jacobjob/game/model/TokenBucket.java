@@ -0,0 +1,34 @@
+package org.jacobjob.game.model;
+
+/**
+ * Rate limit of a client: a bucket of tokens that refills at a steady rate, up to its capacity.
+ * Each message takes a token, so a client can send a burst of up to the capacity, and after that
+ * only as fast as the bucket refills. The bucket is kept as the time it will be full again.
+ */
+public class TokenBucket {
+  private final long nanosPerToken;
+  private final long capacityNanos;
+  private long fullAt = Long.MIN_VALUE;
+
+  /**
+   * @param ratePerSecond tokens added per second
+   * @param capacity tokens the bucket holds, and so the largest burst
+   */
+  public TokenBucket(final int ratePerSecond, final int capacity) {
+    nanosPerToken = 1_000_000_000L / ratePerSecond;
+    capacityNanos = nanosPerToken * capacity;
+  }
+
+  /**
+   * Take a token, if there is one.
+   *
+   * @param nanoTime the current {@link System#nanoTime()}
+   * @return whether a token was taken
+   */
+  public synchronized boolean tryTake(final long nanoTime) {
+    final long next = Math.max(fullAt, nanoTime) + nanosPerToken;
+    if (next - nanoTime > capacityNanos) return false;
+    fullAt = next;
+    return true;
+  }
+}
@@ -0,0 +1,12 @@
+package org.jacobjob.game.model;
+
+/** How animals looking for a way around another animal work out their direction after turning. */
+public enum Trigonometry {
+  /** Sine and cosine of each turned orientation. */
+  EXACT,
+  /**
+   * Rotating the cached direction of the animal by the precomputed sine and cosine of the turn.
+   * Avoids sine and cosine calls in the collision loop; differs from exact by rounding only.
+   */
+  ROTATED
+}
@@ -4,7 +4,12 @@ public enum WebSocketTopic {
   SNAKE("snakes"),
   NEWS("news"),
   SCORE("score"),
-  POLICE("police");
+  POLICE("police"),
+  FRAME("frame"),
+  FRAME_BINARY("frame.binary");
+
+  private static final String ROOMS = "/topic/rooms/";
+  private static final String CLIENT_QUEUE = "/user/queue/";
 
   private final String topic;
 
@@ -12,6 +17,57 @@ public enum WebSocketTopic {
     topic = name;
   }
 
+  /** Name of the topic, without prefix. */
+  public String getName() {
+    return topic;
+  }
+
+  /** Destination of this topic in a room; the default room uses the plain topic. */
+  public String forRoom(final String roomId) {
+    if (GameState.DEFAULT_ROOM.equals(roomId)) return toString();
+    return ROOMS + roomId + "/" + topic;
+  }
+
+  /**
+   * Find the room of a destination of this topic.
+   *
+   * @return the room id, or null if the destination is not this topic
+   */
+  public String roomOf(final String destination) {
+    if (destination == null) return null;
+    if (destination.equals(toString())) return GameState.DEFAULT_ROOM;
+    final String suffix = "/" + topic;
+    if (destination.startsWith(ROOMS)
+        && destination.endsWith(suffix)
+        && destination.length() > ROOMS.length() + suffix.length()) {
+      return destination.substring(ROOMS.length(), destination.length() - suffix.length());
+    }
+    return null;
+  }
+
+  /** Whether messages of this topic are frames, each one building on the frames before it. */
+  public boolean isFrame() {
+    return this == FRAME || this == FRAME_BINARY;
+  }
+
+  /**
+   * Destination of this topic in the queue of one client of a room, to send with the client's
+   * session as user; clients subscribe to it with the {@code /user} prefix.
+   */
+  public String forClient(final String roomId) {
+    return "/queue/" + forRoom(roomId).substring("/topic/".length());
+  }
+
+  /**
+   * Find the room of a client queue subscription of this topic.
+   *
+   * @return the room id, or null if the destination is not the client queue of this topic
+   */
+  public String clientRoomOf(final String destination) {
+    if (destination == null || !destination.startsWith(CLIENT_QUEUE)) return null;
+    return roomOf("/topic/" + destination.substring(CLIENT_QUEUE.length()));
+  }
+
   @Override
   public String toString() {
     return "/topic/" + topic;
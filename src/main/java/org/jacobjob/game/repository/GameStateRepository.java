@@ -1,12 +1,103 @@
 package org.jacobjob.game.repository;
 
-import lombok.Getter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.jacobjob.game.config.GameProperties;
 import org.jacobjob.game.model.GameState;
 import org.springframework.stereotype.Repository;
 
-@Getter
+/** Game state of every room; the default room always exists. */
 @Repository
 public class GameStateRepository {
+  private static final Pattern ROOM_ID = Pattern.compile("[A-Za-z0-9_-]{1,32}");
 
-  private final GameState state = new GameState();
+  private final Map<String, GameState> rooms = new ConcurrentHashMap<>();
+  private final GameProperties properties;
+
+  public GameStateRepository(final GameProperties properties) {
+    this.properties = properties;
+    rooms.put(GameState.DEFAULT_ROOM, new GameState(GameState.DEFAULT_ROOM));
+  }
+
+  /** Game state of the default room. */
+  public GameState getState() {
+    return rooms.get(GameState.DEFAULT_ROOM);
+  }
+
+  public Collection<GameState> getStates() {
+    return rooms.values();
+  }
+
+  public Optional<GameState> find(final String roomId) {
+    return roomId == null ? Optional.empty() : Optional.ofNullable(rooms.get(roomId));
+  }
+
+  /**
+   * Find the room, or open it if it does not exist yet.
+   *
+   * @return empty if the room id is invalid, or the maximum amount of rooms is reached
+   */
+  public Optional<GameState> findOrCreate(final String roomId) {
+    if (roomId == null || !ROOM_ID.matcher(roomId).matches()) return Optional.empty();
+    final GameState state = rooms.get(roomId);
+    if (state != null) return Optional.of(state);
+    synchronized (rooms) {
+      if (rooms.size() >= properties.getMaxRooms() && !rooms.containsKey(roomId)) {
+        return Optional.empty();
+      }
+      return Optional.of(rooms.computeIfAbsent(roomId, GameState::new));
+    }
+  }
+
+  /**
+   * Find or open the room, and join it: the room cannot be closed while joining, see {@link
+   * #close(String, Predicate)}. A room closed just before is opened again.
+   *
+   * @return false if the room id is invalid, or the maximum amount of rooms is reached
+   */
+  public boolean join(final String roomId, final Consumer<GameState> joining) {
+    while (true) {
+      if (findOrCreate(roomId).isEmpty()) return false;
+      final GameState joined =
+          rooms.computeIfPresent(
+              roomId,
+              (id, state) -> {
+                joining.accept(state);
+                return state;
+              });
+      if (joined != null) return true;
+    }
+  }
+
+  /**
+   * Put back a room, replacing the room with the same id, for example from a snapshot.
+   *
+   * @return false if the maximum amount of rooms is reached
+   */
+  public boolean restore(final GameState state) {
+    synchronized (rooms) {
+      if (rooms.size() >= properties.getMaxRooms() && !rooms.containsKey(state.roomId)) {
+        return false;
+      }
+      rooms.put(state.roomId, state);
+      return true;
+    }
+  }
+
+  /**
+   * Close a room if it is empty. Nobody can join the room while it is checked, so nobody joins a
+   * room that is closing. The default room is checked, but stays open.
+   *
+   * @param closing tells whether the room is empty, and lets go of it when it is
+   */
+  public void close(final String roomId, final Predicate<GameState> closing) {
+    rooms.computeIfPresent(
+        roomId,
+        (id, state) -> closing.test(state) && !GameState.DEFAULT_ROOM.equals(id) ? null : state);
+  }
 }
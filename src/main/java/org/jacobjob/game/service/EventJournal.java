@@ -0,0 +1,314 @@
+package org.jacobjob.game.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.GameSnapshotCodec;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.JournalCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Append-only journal of the controls, new boards and ticks of every room, to replay a game exactly
+ * and check each tick against its checksum, see {@link JournalCodec}. The threads ticking the
+ * rooms append records to a batch in memory; a writer thread writes full batches, and the batch so
+ * far every flush interval, to the current segment file. A segment is rotated once it reaches the
+ * segment size, and each room is written in full at its first tick in a segment, so every segment
+ * replays on its own. Only the newest segments are kept.
+ *
+ * <p>Rooms never wait for the disk: when the writer is behind and no batch is free, the records of
+ * the batch are dropped and counted, and each room is written in full again at its next tick, so
+ * a replay picks up the rooms again from there.
+ */
+@Slf4j
+@Service
+public class EventJournal {
+
+  private static final int BATCH_SIZE = 1 << 20;
+  private static final int BATCHES = 4;
+  private static final long FLUSH_MILLIS = 200;
+  private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)\\.log");
+
+  private final GameProperties properties;
+  private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BATCHES);
+  private final BlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile boolean enabled;
+  private volatile boolean failed;
+  private volatile boolean running;
+  /** Counts segments, and batches dropped; rooms not written in full since are written again. */
+  private final AtomicInteger segment = new AtomicInteger();
+  private volatile long droppedRecords = 0;
+  private ByteBuffer batch;
+  private int batchRecords = 0;
+  private Thread writer;
+
+  // Only used by the writer, after the constructor
+  private FileChannel channel;
+  private long segmentBytes;
+  private long segmentNumber;
+
+  @Autowired
+  public EventJournal(final GameProperties properties) {
+    this(properties, Thread.ofPlatform().name("journal-writer").factory());
+  }
+
+  EventJournal(final GameProperties properties, final ThreadFactory writerThreads) {
+    this.properties = properties;
+    final String directory = properties.getJournalDirectory();
+    enabled = directory != null && !directory.isBlank();
+    if (!enabled) return;
+    for (int i = 0; i < BATCHES; i++) {
+      free.add(ByteBuffer.allocateDirect(BATCH_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    }
+    batch = free.poll();
+    try {
+      Files.createDirectories(directory());
+      segmentNumber = lastSegmentNumber();
+      rotate();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Unable to open game journal in " + directory, e);
+    }
+    running = true;
+    writer = writerThreads.newThread(this::write);
+    writer.start();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Records dropped because the writer was behind. */
+  public long getDroppedRecords() {
+    return droppedRecords;
+  }
+
+  /** Before a tick: write the room in full, if it is not in the current segment yet. */
+  public void startTick(final GameState state) {
+    if (!enabled || state.journalSegment == segment.get()) return;
+    final int current = segment.get();
+    final byte[] room = GameSnapshotCodec.encodeRoom(state);
+    final int size = JournalCodec.startSize(state.roomId, room);
+    lock.lock();
+    try {
+      if (size > BATCH_SIZE) {
+        // Too large for a batch: goes to the writer on its own
+        ship();
+        final ByteBuffer own = ByteBuffer.allocate(size);
+        JournalCodec.writeStart(own, state.roomId, room);
+        full.add(own.flip());
+      } else {
+        JournalCodec.writeStart(reserve(size), state.roomId, room);
+      }
+    } finally {
+      lock.unlock();
+    }
+    state.journalSegment = current;
+  }
+
+  /** A control code, as applied by the tick. */
+  public void control(final GameState state, final String controlCode) {
+    if (!enabled) return;
+    final byte[] bytes = JournalCodec.controlBytes(controlCode);
+    lock.lock();
+    try {
+      JournalCodec.writeControl(
+          reserve(JournalCodec.controlSize(state.roomId, bytes)), state.roomId, bytes);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** A new board, with its seed. */
+  public void board(final GameState state) {
+    if (!enabled) return;
+    lock.lock();
+    try {
+      JournalCodec.writeBoard(
+          reserve(JournalCodec.boardSize(state.roomId)), state.roomId, state.seed);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** After a tick: the tick of the room, and the checksum of its state. */
+  public void endTick(final GameState state) {
+    if (!enabled) return;
+    final long checksum = state.checksum();
+    lock.lock();
+    try {
+      JournalCodec.writeTick(
+          reserve(JournalCodec.tickSize(state.roomId)), state.roomId, state.tick, checksum);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Batch with room for a record of the given size. */
+  private ByteBuffer reserve(final int size) {
+    if (batch.remaining() < size) ship();
+    batchRecords++;
+    return batch;
+  }
+
+  /** Hand the batch to the writer, or drop its records when the writer has no batch free. */
+  private void ship() {
+    if (batch.position() == 0) return;
+    final ByteBuffer next = free.poll();
+    if (next == null) {
+      log.warn("Game journal is behind, dropped {} records", batchRecords);
+      droppedRecords += batchRecords;
+      segment.incrementAndGet();
+      batch.clear();
+    } else {
+      full.add(batch.flip());
+      batch = next;
+    }
+    batchRecords = 0;
+  }
+
+  private void write() {
+    while (running || !full.isEmpty()) {
+      final ByteBuffer next;
+      try {
+        next = full.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (next == null) {
+        flush();
+        continue;
+      }
+      try {
+        if (!failed) append(next);
+      } catch (final IOException e) {
+        // Journaling stops, the game goes on
+        log.error("Unable to write game journal, journaling stopped", e);
+        failed = true;
+        enabled = false;
+      }
+      if (next.isDirect()) free.add(next.clear());
+    }
+  }
+
+  private void append(final ByteBuffer records) throws IOException {
+    if (segmentBytes >= properties.getJournalSegmentSize()) rotate();
+    while (records.hasRemaining()) {
+      segmentBytes += channel.write(records);
+    }
+  }
+
+  /** Hand the batch so far to the writer, unless a tick is appending to it right now. */
+  private void flush() {
+    if (!lock.tryLock()) return;
+    try {
+      if (batch.position() > 0 && !free.isEmpty()) ship();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Path directory() {
+    return Path.of(properties.getJournalDirectory());
+  }
+
+  private long lastSegmentNumber() throws IOException {
+    try (final Stream<Path> files = Files.list(directory())) {
+      return files
+          .map(file -> SEGMENT.matcher(file.getFileName().toString()))
+          .filter(Matcher::matches)
+          .mapToLong(matcher -> Long.parseLong(matcher.group(1)))
+          .max()
+          .orElse(0);
+    }
+  }
+
+  /** Start a next segment, and delete the oldest segments. */
+  private void rotate() throws IOException {
+    if (channel != null) channel.close();
+    final Path file = directory().resolve(String.format("journal-%06d.log", ++segmentNumber));
+    channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    final ByteBuffer header = ByteBuffer.allocate(JournalCodec.HEADER_SIZE);
+    JournalCodec.writeHeader(
+        header,
+        new JournalCodec.Header(
+            properties.getBoardWidth(),
+            properties.getBoardHeight(),
+            properties.getAmountOfSnakes(),
+            properties.getTickRate(),
+            properties.getTrigonometry(),
+            properties.getLodDistance(),
+            properties.getLodInterval(),
+            properties.getSeekDistance(),
+            properties.getCollisionMode()));
+    channel.write(header.flip());
+    segmentBytes = JournalCodec.HEADER_SIZE;
+    segment.incrementAndGet();
+    deleteOldSegments();
+  }
+
+  private void deleteOldSegments() throws IOException {
+    final List<Path> segments = segments(directory());
+    for (int i = 0; i < segments.size() - properties.getJournalSegments(); i++) {
+      Files.deleteIfExists(segments.get(i));
+    }
+  }
+
+  /** Segment files in a directory, oldest first. */
+  public static List<Path> segments(final Path directory) throws IOException {
+    try (final Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> SEGMENT.matcher(file.getFileName().toString()).matches())
+          .sorted()
+          .toList();
+    }
+  }
+
+  /** Write what is left; the game loop has stopped ticking by now. */
+  @PreDestroy
+  public void stop() {
+    if (writer == null) return;
+    lock.lock();
+    try {
+      enabled = false;
+      if (batch.position() > 0) full.add(batch.flip());
+    } finally {
+      lock.unlock();
+    }
+    running = false;
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+      channel.close();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final IOException e) {
+      log.warn("Unable to close game journal", e);
+    }
+  }
+}
@@ -1,14 +1,25 @@
 package org.jacobjob.game.service;
 
-import java.util.ArrayList;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
 import org.jacobjob.game.model.Animal;
 import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.CollisionMode;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameRandom;
 import org.jacobjob.game.model.GameState;
-import org.jacobjob.game.repository.GameStateRepository;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.jacobjob.game.model.SpatialGrid;
+import org.jacobjob.game.model.SweepAndPrune;
+import org.jacobjob.game.model.TickMode;
+import org.jacobjob.game.model.TickPhase;
+import org.jacobjob.game.model.Trigonometry;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -16,56 +27,75 @@ import org.springframework.stereotype.Service;
 @AllArgsConstructor
 public class GameBoardService {
 
-  private static final int MAX_X = 1200 * 2;
-  private static final int MAX_Y = 700 * 2;
   public static final int VIEW_PORT_WIDTH = 1200;
   public static final int VIEW_PORT_HEIGHT = 700;
-  private static final int AMOUNT_OF_SNAKES = 30;
-  private static final long REFRESH_DELAY = 50;
+  private static final int RESET_DELAY_SECONDS = 2;
+
+  private static final double AVOID_TURN = Math.PI / 6d;
+  private static final double COS_AVOID_TURN = Math.cos(AVOID_TURN);
+  private static final double SIN_AVOID_TURN = Math.sin(AVOID_TURN);
+
+  private static final ThreadLocal<SpatialGrid.Neighbours> NEIGHBOURS =
+      ThreadLocal.withInitial(SpatialGrid.Neighbours::new);
 
   private final WebSocketService webSocketService;
-  private final GameStateRepository gameState;
-
-  @SuppressWarnings("unused")
-  @Scheduled(
-      initialDelay = 3_000,
-      fixedRate = 5_000) // Runs every 5 seconds; wait before starting the first time
-  public void start() throws InterruptedException {
-    GameState state = gameState.getState();
-    log.info("Start with run loop");
-    if (state.resetBoard) {
-      setupGameBoard(state);
-    }
+  private final GameProperties properties;
+  private final ForkJoinPool tickPool;
+  private final GameMetrics metrics;
+  private final EventJournal journal;
+
+  /**
+   * Run one tick of the game. After a reset the board is set up again once the player had a moment
+   * to read the score. Every tick is journaled, also when it fails, so a replay fails alike.
+   */
+  public void tick(final GameState state) {
+    journal.startTick(state);
     try {
-      for (int i = 0; i < 100; i++) {
-        loop(state);
-        if (state.isPause()) i--;
-        if (state.animals.isEmpty() || state.resetBoard) {
-          log.info("Finished after {} steps", i);
-          break;
-        }
+      applyControls(state);
+      if (state.resetBoard) {
+        if (++state.resetWait < RESET_DELAY_SECONDS * properties.getTickRate()) return;
+        setupGameBoard(state);
       }
-    } catch (final InterruptedException e) {
-      log.warn("Interrupted by user.");
-      Thread.currentThread().interrupt();
+      loop(state);
+    } finally {
+      journal.endTick(state);
     }
-    log.info("Amount of animals survived: {}", state.animals.size());
   }
 
-  private void setupGameBoard(final GameState state) throws InterruptedException {
+  /**
+   * Whether a tick is published at the publish rate: the ticks on which the count of frames due
+   * goes up, so frames are evenly spread, also when the tick rate is no multiple of the publish
+   * rate.
+   */
+  static boolean isPublished(final long tick, final int tickRate, final int publishRate) {
+    if (publishRate <= 0 || publishRate >= tickRate) return true;
+    return tick * publishRate / tickRate != (tick - 1) * publishRate / tickRate;
+  }
+
+  private void setupGameBoard(final GameState state) {
     log.info("Reset player board");
-    Thread.sleep(2000L);
-    webSocketService.sendNews("reset");
+    webSocketService.sendNews(state, "reset");
     state.resetBoard = false;
+    state.resetWait = 0;
     state.deadAnimalCounter = 0;
     state.highestAnimalNumber = 1;
     state.animals.clear();
+    // Every next board of the room follows from the seed of the first board
+    state.seed = state.random == null ? initialSeed() : state.random.nextLong();
+    state.random = new GameRandom(state.seed);
+    journal.board(state);
+    log.info("Board seed of room {}: {}", state.roomId, state.seed);
     addAnimals(state, AnimalType.PLAYER, 1);
-    addAnimals(state, AnimalType.SNAKE, AMOUNT_OF_SNAKES);
-    addAnimals(state, AnimalType.POLICE, AMOUNT_OF_SNAKES / 4);
-    addAnimals(state, AnimalType.GOLD, AMOUNT_OF_SNAKES / 3);
+    final int amountOfSnakes = properties.getAmountOfSnakes();
+    addAnimals(state, AnimalType.SNAKE, amountOfSnakes);
+    addAnimals(state, AnimalType.POLICE, amountOfSnakes / 4);
+    addAnimals(state, AnimalType.GOLD, amountOfSnakes / 3);
     adjustInitialViewPort(state);
-    webSocketService.updateScore(state.player);
+    webSocketService.updateScore(state, state.player.getScore());
+  }
+
+  private long initialSeed() {
+    return properties.getSeed() != null ? properties.getSeed() : new SecureRandom().nextLong();
   }
 
   private void adjustInitialViewPort(final GameState state) {
@@ -73,31 +103,267 @@ public class GameBoardService {
     state.viewPortY = state.player.getY() - (VIEW_PORT_HEIGHT / 2);
     if (state.viewPortX < 0) state.viewPortX = 0;
     if (state.viewPortY < 0) state.viewPortY = 0;
-    if (state.viewPortX > MAX_X - VIEW_PORT_WIDTH) state.viewPortX = MAX_X - VIEW_PORT_WIDTH;
-    if (state.viewPortY > MAX_Y - VIEW_PORT_HEIGHT) state.viewPortY = MAX_Y - VIEW_PORT_HEIGHT;
+    final int maxViewPortX = properties.getBoardWidth() - VIEW_PORT_WIDTH;
+    final int maxViewPortY = properties.getBoardHeight() - VIEW_PORT_HEIGHT;
+    if (state.viewPortX > maxViewPortX) state.viewPortX = maxViewPortX;
+    if (state.viewPortY > maxViewPortY) state.viewPortY = maxViewPortY;
   }
 
-  private void loop(final GameState state) throws InterruptedException {
-    // move animals 1 step
+  private void loop(final GameState state) {
+    state.tick++;
+    planSteps(state);
+    if (properties.getCollisionMode() == CollisionMode.SWEEP) {
+      state.sweepAndPrune.start(state.animals);
+    }
+
+    // move animals 1 step, or several when far from the viewport
     if (!state.pause) {
-      state.animals.forEach(Animal::step);
-      state.animals.forEach(Animal::safeGuardEdges);
+      long start = System.nanoTime();
+      forEachAnimal(state, GameBoardService::step);
+      metrics.phase(TickPhase.STEP, start);
+      start = System.nanoTime();
+      forEachAnimal(state, GameBoardService::safeGuardEdges);
+      metrics.phase(TickPhase.SAFE_GUARD_EDGES, start);
     }
     updateViewPort(state);
 
     // check for illegal positions: change status if so.
-    state.animals.forEach(animal -> verifyEdges(state, animal));
+    long start = System.nanoTime();
+    for (int i = 0; i < state.animals.size(); i++) {
+      verifyEdges(state, state.animals.get(i));
+    }
+    metrics.phase(TickPhase.VERIFY_EDGES, start);
 
-    // Send new coordinates of animals to front-end
-    state.animals.forEach(webSocketService::updateAnimal);
+    // Send new coordinates of animals to front-end, on the ticks that are published
+    if (isPublished(state.tick, properties.getTickRate(), properties.getPublishRate())) {
+      start = System.nanoTime();
+      webSocketService.updateAnimals(state);
+      metrics.phase(TickPhase.UPDATE_ANIMALS, start);
+    }
 
     // Check for collisions and avoid them or find gold
-    state.animals.forEach(animal -> findCloseAnimals(state, animal));
+    start = System.nanoTime();
+    handleCollisions(state);
+    metrics.phase(TickPhase.FIND_CLOSE_ANIMALS, start);
 
     // Clean up the board
+    start = System.nanoTime();
     handleDeadAnimals(state);
+    countAnimals(state);
+    metrics.phase(TickPhase.HANDLE_DEAD_ANIMALS, start);
+  }
+
+  /**
+   * Decide the steps of each animal in this tick. Animals near the viewport take one step each
+   * tick. Far animals take {@code lodInterval} steps in a row every {@code lodInterval} ticks,
+   * spread over the ticks by animal number, and their collisions are only checked when they move.
+   * Animals are near before they come into view, so they move smoothly once visible.
+   */
+  private void planSteps(final GameState state) {
+    final int animals = state.animals.size();
+    if (state.animalSteps.length < animals) {
+      state.animalSteps = new int[Math.max(animals, state.animalSteps.length * 2)];
+    }
+    final int[] steps = state.animalSteps;
+    final int interval = properties.getLodInterval();
+    if (interval <= 1) {
+      Arrays.fill(steps, 0, animals, 1);
+      return;
+    }
+    for (int i = 0; i < animals; i++) {
+      final Animal animal = state.animals.get(i);
+      if (!isFar(state, animal)) {
+        steps[i] = 1;
+      } else {
+        steps[i] = (state.tick + animal.getNumber()) % interval == 0 ? interval : 0;
+      }
+    }
+  }
+
+  private boolean isFar(final GameState state, final Animal animal) {
+    final int x = animal.getX();
+    final int y = animal.getY();
+    final int outsideX = Math.max(state.viewPortX - x, x - state.viewPortX - VIEW_PORT_WIDTH);
+    final int outsideY = Math.max(state.viewPortY - y, y - state.viewPortY - VIEW_PORT_HEIGHT);
+    return Math.max(outsideX, outsideY) > properties.getLodDistance();
+  }
+
+  /** Whether the animal skips this tick; animals without planned steps never do. */
+  private static boolean isResting(final GameState state, final int index) {
+    return index < state.animalSteps.length && state.animalSteps[index] == 0;
+  }
 
-    Thread.sleep(REFRESH_DELAY);
+  /**
+   * Take the planned steps. Animals taking several steps check the edges after each one but the
+   * last, exactly as they would over as many ticks; the last check is the edge phase of the tick.
+   */
+  private static void step(final Animal animal, final int steps) {
+    for (int i = 1; i < steps; i++) {
+      animal.step();
+      animal.safeGuardEdges();
+    }
+    if (steps > 0) animal.step();
+  }
+
+  private static void safeGuardEdges(final Animal animal, final int steps) {
+    if (steps > 0) animal.safeGuardEdges();
+  }
+
+  /**
+   * Apply a move to all animals, with the steps planned for each; animals only change themselves
+   * while moving.
+   */
+  private void forEachAnimal(final GameState state, final ObjIntConsumer<Animal> move) {
+    final List<Animal> animals = state.animals;
+    final int[] steps = state.animalSteps;
+    if (properties.getTickMode() == TickMode.PARALLEL) {
+      tickPool
+          .submit(
+              () ->
+                  IntStream.range(0, animals.size())
+                      .parallel()
+                      .forEach(i -> move.accept(animals.get(i), steps[i])))
+          .join();
+      return;
+    }
+    for (int i = 0; i < animals.size(); i++) {
+      move.accept(animals.get(i), steps[i]);
+    }
+  }
+
+  void handleCollisions(final GameState state) {
+    final int detectDistance = detectDistance(state);
+    if (properties.getSeekDistance() > 0) {
+      state.targetGrid.rebuild(
+          state.animals, properties.getBoardWidth(), properties.getBoardHeight());
+    }
+    if (properties.getCollisionMode() == CollisionMode.SWEEP) {
+      sweepCollisions(state, detectDistance);
+      return;
+    }
+    final SpatialGrid grid = state.spatialGrid;
+    grid.rebuild(
+        state.animals, properties.getBoardWidth(), properties.getBoardHeight(), detectDistance);
+    if (properties.getTickMode() == TickMode.SEQUENTIAL) {
+      for (int i = 0; i < state.animals.size(); i++) {
+        if (!isResting(state, i)) findCloseAnimals(state, state.animals.get(i), null, 0);
+      }
+      return;
+    }
+
+    // Find the close animals in parallel: nothing moves or dies while doing so
+    final int animals = state.animals.size();
+    if (state.candidates.length < animals) {
+      final int length = Math.max(animals, state.candidates.length * 2);
+      state.candidates = Arrays.copyOf(state.candidates, length);
+      state.candidateCounts = new int[length];
+    }
+    final int[] counts = state.candidateCounts;
+    final int moves = grid.getMoves();
+    tickPool
+        .submit(
+            () ->
+                IntStream.range(0, animals)
+                    .parallel()
+                    .forEach(
+                        i ->
+                            counts[i] =
+                                isResting(state, i) ? 0 : findCandidates(state, i, detectDistance)))
+        .join();
+
+    // Apply the collisions in list order, like the sequential mode. Once caught gold has moved or
+    // the player has grown, the candidates can be incomplete: then search the grid again.
+    for (int i = 0; i < animals; i++) {
+      if (isResting(state, i)) continue;
+      final boolean stale = grid.getMoves() != moves || detectDistance(state) != detectDistance;
+      findCloseAnimals(
+          state, state.animals.get(i), stale ? null : state.candidates[i], counts[i]);
+    }
+  }
+
+  /**
+   * Handle each pair of animals found by the sweep once, in sweep order. They collide when they
+   * overlapped at any moment of the tick; like in the grid, the animal first in the list is tested
+   * with its own size first. Then each avoids the other when close. Animals with nothing close
+   * seek a target afterwards.
+   */
+  private void sweepCollisions(final GameState state, final int detectDistance) {
+    final List<Animal> animals = state.animals;
+    final SweepAndPrune sweep = state.sweepAndPrune;
+    int reach = detectDistance;
+    for (int i = 0; i < animals.size(); i++) {
+      reach = Math.max(reach, animals.get(i).getSize());
+    }
+    sweep.sweep(animals, reach);
+    for (int pair = 0; pair < sweep.pairCount(); pair++) {
+      final int index = Math.min(sweep.first(pair), sweep.second(pair));
+      final int otherIndex = Math.max(sweep.first(pair), sweep.second(pair));
+      if (isResting(state, index) && isResting(state, otherIndex)) continue;
+      final Animal animal = animals.get(index);
+      final Animal other = animals.get(otherIndex);
+      if (!animal.isAlive() || !other.isAlive()) continue;
+      if (sweptOverlap(sweep, index, animal, otherIndex, other, animal.getSize())) {
+        resolveCollision(state, animal, other);
+      } else if (sweptOverlap(sweep, otherIndex, other, index, animal, other.getSize())) {
+        resolveCollision(state, other, animal);
+      }
+      if (isClose(animal, other, detectDistance)) {
+        sweep.markClose(index);
+        sweep.markClose(otherIndex);
+        if (!isResting(state, index)) avoidCollision(animal, other);
+        if (!isResting(state, otherIndex)) avoidCollision(other, animal);
+      }
+    }
+    if (properties.getSeekDistance() == 0) return;
+    for (int i = 0; i < animals.size(); i++) {
+      final Animal animal = animals.get(i);
+      if (animal.isAlive() && !isResting(state, i) && !sweep.isClose(i)) seek(state, animal);
+    }
+  }
+
+  /** Gold only moves when caught, to somewhere else: it has no path over the tick. */
+  private static boolean sweptOverlap(
+      final SweepAndPrune sweep,
+      final int index,
+      final Animal animal,
+      final int otherIndex,
+      final Animal other,
+      final int size) {
+    return SweepAndPrune.sweptOverlap(
+        animal.isGold() ? animal.getX() : sweep.startX(index, animal),
+        animal.isGold() ? animal.getY() : sweep.startY(index, animal),
+        animal.getX(),
+        animal.getY(),
+        other.isGold() ? other.getX() : sweep.startX(otherIndex, other),
+        other.isGold() ? other.getY() : sweep.startY(otherIndex, other),
+        other.getX(),
+        other.getY(),
+        size);
+  }
+
+  /**
+   * Put the animals close to an animal in its row of the candidates, growing the row when needed.
+   *
+   * @return amount of candidates
+   */
+  private int findCandidates(final GameState state, final int index, final int detectDistance) {
+    final Animal animal = state.animals.get(index);
+    if (!animal.isAlive()) return 0;
+    final SpatialGrid.Neighbours found =
+        state.spatialGrid.query(animal.getX(), animal.getY(), detectDistance, NEIGHBOURS.get());
+    int[] candidates = state.candidates[index];
+    if (candidates == null || candidates.length < found.size()) {
+      final int length = candidates == null ? 8 : 2 * candidates.length;
+      candidates = new int[Math.max(found.size(), length)];
+      state.candidates[index] = candidates;
+    }
+    int amount = 0;
+    for (int i = 0; i < found.size(); i++) {
+      if (isClose(animal, state.animals.get(found.get(i)), detectDistance)) {
+        candidates[amount++] = found.get(i);
+      }
+    }
+    return amount;
   }
 
   private void updateViewPort(final GameState state) {
@@ -105,11 +371,11 @@ public class GameBoardService {
     final int y = state.player.getY();
     final int fromEdge = 250;
     if (x > state.viewPortX + VIEW_PORT_WIDTH - fromEdge
-        && state.viewPortX < MAX_X - VIEW_PORT_WIDTH) {
+        && state.viewPortX < properties.getBoardWidth() - VIEW_PORT_WIDTH) {
       state.viewPortX = x + fromEdge - VIEW_PORT_WIDTH;
     }
     if (y > state.viewPortY + VIEW_PORT_HEIGHT - fromEdge
-        && state.viewPortY < MAX_Y - VIEW_PORT_HEIGHT) {
+        && state.viewPortY < properties.getBoardHeight() - VIEW_PORT_HEIGHT) {
       state.viewPortY = y + fromEdge - VIEW_PORT_HEIGHT;
     }
     if (x < state.viewPortX + fromEdge && state.viewPortX > 0) {
@@ -120,15 +386,19 @@ public class GameBoardService {
     }
   }
 
-  private void handleDeadAnimals(final GameState state) {
-    List<Animal> deadAnimals = new ArrayList<>();
-    state.animals.stream()
-        .filter(animal -> !animal.isAlive() && !animal.isGold())
-        .forEach(deadAnimals::add);
+  /** Remove the dead animals in place, keeping the others in order. */
+  void handleDeadAnimals(final GameState state) {
+    final List<Animal> animals = state.animals;
+    int alive = 0;
+    for (int i = 0; i < animals.size(); i++) {
+      final Animal animal = animals.get(i);
+      if (animal.isAlive() || animal.isGold()) animals.set(alive++, animal);
+    }
+    final int dead = animals.size() - alive;
 
-    if (!deadAnimals.isEmpty()) {
-      state.deadAnimalCounter += deadAnimals.size();
-      state.animals.removeAll(deadAnimals);
+    if (dead > 0) {
+      while (animals.size() > alive) animals.removeLast();
+      state.deadAnimalCounter += dead;
       if (state.deadAnimalCounter == 4) {
         addAnimals(state, AnimalType.SNAKE, 2);
         state.deadAnimalCounter = 0;
@@ -136,58 +406,126 @@ public class GameBoardService {
     }
   }
 
-  private void findCloseAnimals(final GameState state, final Animal animal) {
+  /** Count the animals left on the board by type, to be read by the metrics. */
+  private static void countAnimals(final GameState state) {
+    final int[] counts = state.countingAnimals;
+    Arrays.fill(counts, 0);
+    for (int i = 0; i < state.animals.size(); i++) {
+      counts[state.animals.get(i).getAnimalType().ordinal()]++;
+    }
+    for (int type = 0; type < counts.length; type++) {
+      state.animalCounts.set(type, counts[type]);
+    }
+  }
+
+  private int detectDistance(final GameState state) {
+    return state.player.getSize() * 8;
+  }
+
+  /**
+   * Handle the animals close to this animal, in list order.
+   *
+   * @param candidates indexes of the close animals, or null to find them in the grid
+   * @param count amount of candidates
+   */
+  private void findCloseAnimals(
+      final GameState state, final Animal animal, final int[] candidates, final int count) {
     if (!animal.isAlive()) return;
-    final int detectDistance = state.player.getSize() * 8;
-    state.animals.stream()
-        .filter(
-            other ->
-                (other.isAlive()
-                    && animal.getNumber() != other.getNumber()
-                    && animal.getX() + detectDistance >= other.getX()
-                    && animal.getX() - detectDistance <= other.getX()
-                    && animal.getY() + detectDistance >= other.getY()
-                    && animal.getY() - detectDistance <= other.getY()))
-        .forEach(
-            other -> {
-              handleCollision(state, animal, other);
-              avoidCollision(animal, other);
-            });
+    final int detectDistance = detectDistance(state);
+    final SpatialGrid grid = state.spatialGrid;
+    int x = animal.getX();
+    int y = animal.getY();
+    int[] known = candidates;
+    int found = known != null ? count : grid.query(x, y, detectDistance);
+    int lastIndex = -1;
+    boolean close = false;
+    for (int i = 0; i < found; i++) {
+      final int index = known != null ? known[i] : grid.foundIndex(i);
+      if (index <= lastIndex) continue;
+      lastIndex = index;
+      final Animal other = state.animals.get(index);
+      if (isClose(animal, other, detectDistance)) {
+        close = true;
+        handleCollision(state, animal, other);
+        avoidCollision(animal, other);
+      }
+      if (animal.getX() != x || animal.getY() != y) {
+        // Gold was caught and moved: continue with the animals close to its new location
+        x = animal.getX();
+        y = animal.getY();
+        known = null;
+        found = grid.query(x, y, detectDistance);
+        i = -1;
+      }
+    }
+    if (!close && properties.getSeekDistance() > 0) seek(state, animal);
+  }
+
+  /**
+   * Head for the nearest gold, or for police the player, when nothing is close by. Turning to a
+   * target works like turning to one close by, see {@link #avoidCollision(Animal, Animal)}.
+   */
+  private void seek(final GameState state, final Animal animal) {
+    final AnimalType targetType;
+    if (animal.isPolice()) {
+      targetType = AnimalType.PLAYER;
+    } else if (animal.getAnimalType() == AnimalType.SNAKE) {
+      targetType = AnimalType.GOLD;
+    } else {
+      return;
+    }
+    final Animal target =
+        state.targetGrid.nearest(
+            animal.getX(), animal.getY(), targetType, properties.getSeekDistance());
+    if (target != null) avoidCollision(animal, target);
+  }
+
+  static boolean isClose(final Animal animal, final Animal other, final int detectDistance) {
+    return other.isAlive()
+        && animal.getNumber() != other.getNumber()
+        && animal.getX() + detectDistance >= other.getX()
+        && animal.getX() - detectDistance <= other.getX()
+        && animal.getY() + detectDistance >= other.getY()
+        && animal.getY() - detectDistance <= other.getY();
   }
 
   private void handleCollision(final GameState state, final Animal animal, final Animal other) {
     if (Math.abs(animal.getX() - other.getX()) < animal.getSize()
         && Math.abs(animal.getY() - other.getY()) < animal.getSize()) {
+      resolveCollision(state, animal, other);
+    }
+  }
 
-      if (other.isGold()) {
-        killAnimal(state, other, animal);
-        return;
-      } else if (animal.isGold()) {
-        killAnimal(state, animal, other);
-        return;
-      }
-      if (!animal.isPolice() && other.isPolice()
-          || animal.isPolice() && other.isPolice()
-          || !animal.isPolice() && !other.isPolice()) {
-        killAnimal(state, animal, other);
-        if (other.isPolice()) 
-          animal.changeSpeed(1); // Reward the police from catching: make them faster
-        return;
-      }
-      if (animal.isPolice() && !other.isPolice()) {
-        killAnimal(state, other, animal);
+  /** Kill the animal or the other one of two overlapping animals, or catch the gold. */
+  private void resolveCollision(final GameState state, final Animal animal, final Animal other) {
+    if (other.isGold()) {
+      killAnimal(state, other, animal);
+      return;
+    } else if (animal.isGold()) {
+      killAnimal(state, animal, other);
+      return;
+    }
+    if (!animal.isPolice() && other.isPolice()
+        || animal.isPolice() && other.isPolice()
+        || !animal.isPolice() && !other.isPolice()) {
+      killAnimal(state, animal, other);
+      if (other.isPolice()) 
         animal.changeSpeed(1); // Reward the police from catching: make them faster
-      }
+      return;
+    }
+    if (animal.isPolice() && !other.isPolice()) {
+      killAnimal(state, other, animal);
+      animal.changeSpeed(1); // Reward the police from catching: make them faster
     }
   }
 
   private void avoidCollision(final Animal animal, final Animal other) {
     if (animal.isPlayer() || animal.isAvoiding() && !other.isPlayer()) return;
-    double correction = Math.PI / 6d;
+    double correction = AVOID_TURN;
 
-    final int nextDistance1 = getNextDistance(animal, other, correction);
+    final int nextDistance1 = getNextDistance(animal, other, 1);
     final int nextDistance2 = getNextDistance(animal, other, 0);
-    final int nextDistance3 = getNextDistance(animal, other, -correction);
+    final int nextDistance3 = getNextDistance(animal, other, -1);
 
     if (animal.isPolice() && !other.isPolice() || animal.isSnake() && other.isGold()) {
       if (nextDistance2 <= nextDistance1 && nextDistance2 <= nextDistance3) correction = 0;
@@ -201,86 +539,135 @@ public class GameBoardService {
     animal.changeOrientation(correction);
   }
 
-  private int getNextDistance(final Animal animal, final Animal other, final double correction) {
-    final int nextX =
-        animal.getX() + (int) (Math.cos(animal.getOrientation() + correction) * animal.getSpeed());
-    final int nextY =
-        animal.getY() + (int) (Math.sin(animal.getOrientation() + correction) * animal.getSpeed());
+  /**
+   * Distance to the other animal after the next step, when turning to avoid it.
+   *
+   * @param turn 1 or -1 to turn clockwise or anti clockwise, 0 to keep going straight
+   */
+  int getNextDistance(final Animal animal, final Animal other, final int turn) {
+    final double directionX;
+    final double directionY;
+    if (properties.getTrigonometry() == Trigonometry.EXACT) {
+      directionX = Math.cos(animal.getOrientation() + turn * AVOID_TURN);
+      directionY = Math.sin(animal.getOrientation() + turn * AVOID_TURN);
+    } else {
+      final double cos = turn == 0 ? 1 : COS_AVOID_TURN;
+      final double sin = turn * SIN_AVOID_TURN;
+      directionX = animal.getDirectionX() * cos - animal.getDirectionY() * sin;
+      directionY = animal.getDirectionY() * cos + animal.getDirectionX() * sin;
+    }
+    final int nextX = animal.getX() + (int) (directionX * animal.getSpeed());
+    final int nextY = animal.getY() + (int) (directionY * animal.getSpeed());
     return Math.abs(nextX - other.getX()) + Math.abs(nextY - other.getY());
   }
 
   private void verifyEdges(final GameState state, final Animal animal) {
     if (!animal.isAlive() || animal.isGold()) return;
     if (animal.getX() < 0 || animal.getY() < 0) killAnimal(state, animal, null);
-    if (animal.getX() + animal.getSize() > MAX_X || animal.getY() + animal.getSize() > MAX_Y)
+    if (animal.getX() + animal.getSize() > properties.getBoardWidth()
+        || animal.getY() + animal.getSize() > properties.getBoardHeight())
       killAnimal(state, animal, null);
     if (!animal.isAlive()) {
       webSocketService.sendNews(
+          state,
           animal.getAnimalType().toString() + " " + animal.getNumber() + " was killed by the edge");
       if (animal.isPlayer())
-        webSocketService.sendNews("You scored: " + animal.getScore() + " points!");
+        webSocketService.sendNews(state, "You scored: " + animal.getScore() + " points!");
     }
   }
 
   private void killAnimal(final GameState state, final Animal animal, final Animal killer) {
+    final int oldX = animal.getX();
+    final int oldY = animal.getY();
     animal.kill();
     if (animal.isGold()) {
-      webSocketService.updateAnimal(animal);
+      webSocketService.updateAnimal(state, animal);
       animal.createAnimal(); // Refresh Gold to different location; do not kill
+      if (properties.getCollisionMode() == CollisionMode.GRID) {
+        state.spatialGrid.move(animal, oldX, oldY);
+      }
+      state.targetGrid.move(animal, oldX, oldY);
       if (killer != null) {
         killer.scored();
         killer.changeSize(1); // Reward killing
-        if (killer.isPlayer()) webSocketService.updateScore(killer);
+        if (killer.isPlayer()) webSocketService.updateScore(state, killer.getScore());
       }
       return;
     }
     if (killer != null) {
       webSocketService.sendNews(
+          state,
           animal.getAnimalType()
               + " "
               + animal.getNumber()
               + " was killed by "
               + killer.getAnimalType());
       killer.changeSize(2); // Reward killing
-      webSocketService.updateAnimal(killer);
+      webSocketService.updateAnimal(state, killer);
     }
-    webSocketService.updateAnimal(animal);
+    webSocketService.updateAnimal(state, animal);
     if (animal.isPlayer()) {
       state.resetBoard = true;
-      webSocketService.sendNews("You scored: " + animal.getScore() + " points!");
+      webSocketService.sendNews(state, "You scored: " + animal.getScore() + " points!");
     }
   }
 
   private void addAnimals(final GameState state, final AnimalType type, final int amount) {
     if (amount == 0) return;
     for (int i = 1; i <= amount; i++) {
-      state.animals.add(new Animal(state.highestAnimalNumber++, type, MAX_X, MAX_Y));
+      state.animals.add(
+          new Animal(
+              state.highestAnimalNumber++,
+              type,
+              properties.getBoardWidth(),
+              properties.getBoardHeight(),
+              state.random.split()));
     }
     if (type != AnimalType.GOLD) {
       log.info("Creating {} {}", amount, type);
-      webSocketService.sendNews("Added " + amount + " new " + type);
+      webSocketService.sendNews(state, "Added " + amount + " new " + type);
     }
     if (type.equals(AnimalType.PLAYER)) {
       state.player = state.animals.getLast();
     }
   }
 
-  public void processKeys(final String controlCode) {
-    GameState state = gameState.getState();
+  /**
+   * Hand over a control of a client. It is applied by the game loop at the start of the next tick,
+   * so the game state is only changed by the thread ticking it.
+   */
+  public void processKeys(final GameState state, final ControlCode controlCode) {
+    metrics.controlReceived();
+    state.controls.offer(controlCode);
+  }
+
+  /** Apply the net controls received since the previous tick; the journal holds what is applied. */
+  private void applyControls(final GameState state) {
+    if (state.controls.isEmpty()) return;
+    state.controls.drain(
+        controlCode -> {
+          journal.control(state, controlCode.getCode());
+          applyControl(state, controlCode);
+        });
+  }
+
+  private void applyControl(final GameState state, final ControlCode controlCode) {
     double correction = Math.PI / 6d;
-    if ("left".equals(controlCode)) {
-      state.player.changeOrientation(-correction);
-    } else if ("right".equals(controlCode)) {
-      state.player.changeOrientation(correction);
-    } else if ("up".equals(controlCode)) {
-      state.player.changeSpeed(2);
-    } else if ("down".equals(controlCode)) {
-      state.player.changeSpeed(-2);
-    } else if ("reset".equals(controlCode)) {
-      state.resetBoard = true;
-    } else if ("pause".equals(controlCode)) {
-      state.pause = !state.pause;
-      webSocketService.sendNews(state.isPause() ? "Game paused" : "Game continued!");
+    if (state.player == null) {
+      // No board yet: only a pause is remembered
+      if (controlCode == ControlCode.PAUSE) state.pause = !state.pause;
+      return;
+    }
+    switch (controlCode) {
+      case LEFT -> state.player.changeOrientation(-correction);
+      case RIGHT -> state.player.changeOrientation(correction);
+      case UP -> state.player.changeSpeed(2);
+      case DOWN -> state.player.changeSpeed(-2);
+      case RESET -> state.resetBoard = true;
+      case PAUSE -> {
+        state.pause = !state.pause;
+        webSocketService.sendNews(state, state.isPause() ? "Game paused" : "Game continued!");
+      }
     }
   }
 }
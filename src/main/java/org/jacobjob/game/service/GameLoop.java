@@ -0,0 +1,154 @@
+package org.jacobjob.game.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs the game ticks on a dedicated thread, at a fixed rate. The time a tick takes is subtracted
+ * from the wait for the next one. After a stall, missed ticks are run back to back to catch up, up
+ * to a maximum; any more are skipped. Every tick, all rooms are ticked in parallel on a pool sized
+ * to the available cores. Between ticks the rooms are captured for a snapshot, which is restored on
+ * start and saved on stop.
+ */
+@Slf4j
+@Service
+public class GameLoop implements SmartLifecycle {
+
+  private final GameBoardService gameBoardService;
+  private final GameStateRepository gameState;
+  private final GameProperties properties;
+  private final GameMetrics metrics;
+  private final SnapshotService snapshotService;
+
+  private volatile Thread thread;
+  private ExecutorService roomExecutor;
+  private volatile boolean running = false;
+
+  @Getter private volatile long ticks = 0;
+  @Getter private volatile long skippedTicks = 0;
+  @Getter private volatile long overruns = 0;
+  @Getter private volatile long lastTickNanos = 0;
+
+  public GameLoop(
+      final GameBoardService gameBoardService,
+      final GameStateRepository gameState,
+      final GameProperties properties,
+      final GameMetrics metrics,
+      final SnapshotService snapshotService) {
+    this.gameBoardService = gameBoardService;
+    this.gameState = gameState;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.snapshotService = snapshotService;
+  }
+
+  public int getTickRate() {
+    return properties.getTickRate();
+  }
+
+  @Override
+  public void start() {
+    final int roomThreads =
+        properties.getRoomThreads() > 0
+            ? properties.getRoomThreads()
+            : Runtime.getRuntime().availableProcessors();
+    snapshotService.restore();
+    roomExecutor =
+        Executors.newFixedThreadPool(roomThreads, Thread.ofPlatform().name("room-", 1).factory());
+    running = true;
+    thread = Thread.ofPlatform().name("game-loop").start(this::run);
+    log.info("Started game loop at {} ticks per second", getTickRate());
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    final Thread current = thread;
+    if (current == null) return;
+    current.interrupt();
+    try {
+      current.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    roomExecutor.shutdownNow();
+    if (!current.isAlive()) snapshotService.save();
+    log.info("Stopped game loop after {} ticks, {} skipped", ticks, skippedTicks);
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void run() {
+    final long tickNanos = TimeUnit.SECONDS.toNanos(1) / getTickRate();
+    long nextTick = System.nanoTime();
+    while (running) {
+      final long now = System.nanoTime();
+      if (now < nextTick) {
+        LockSupport.parkNanos(nextTick - now);
+        continue;
+      }
+      final long behind = (now - nextTick) / tickNanos;
+      if (behind > properties.getMaxCatchUpTicks()) {
+        final long skip = behind - properties.getMaxCatchUpTicks();
+        skippedTicks += skip;
+        nextTick += skip * tickNanos;
+        log.warn("Game loop is {} ticks behind, skipped {} ticks", behind, skip);
+      }
+
+      final long start = System.nanoTime();
+      try {
+        tickRooms();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      lastTickNanos = System.nanoTime() - start;
+      metrics.tick(lastTickNanos, tickNanos);
+      if (lastTickNanos > tickNanos) overruns++;
+      ticks++;
+      nextTick += tickNanos;
+      snapshotService.afterTick();
+    }
+  }
+
+  private void tickRooms() throws InterruptedException {
+    final Collection<GameState> rooms = gameState.getStates();
+    if (rooms.size() == 1) {
+      tickRoom(rooms.iterator().next());
+      return;
+    }
+    final List<Callable<Void>> tasks = new ArrayList<>(rooms.size());
+    for (final GameState room : rooms) {
+      tasks.add(
+          () -> {
+            tickRoom(room);
+            return null;
+          });
+    }
+    roomExecutor.invokeAll(tasks);
+  }
+
+  private void tickRoom(final GameState state) {
+    try {
+      gameBoardService.tick(state);
+    } catch (final RuntimeException e) {
+      log.error("Game tick {} of room {} failed", ticks, state.roomId, e);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package org.jacobjob.game.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import org.jacobjob.game.model.TickPhase;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.springframework.stereotype.Service;
+
+/**
+ * Meters of the game loop, the messages sent and the controls received. All meters are created up
+ * front, so recording on the tick thread only updates them.
+ */
+@Service
+public class GameMetrics {
+
+  /** Topic tag of the frames sent to native websocket clients. */
+  static final String NATIVE_FRAME = "native-frame";
+
+  private final Timer tick;
+  private final Timer overrun;
+  private final Timer[] phases = new Timer[TickPhase.values().length];
+  private final Counter[] messages = new Counter[WebSocketTopic.values().length];
+  private final Counter[] bytes = new Counter[WebSocketTopic.values().length];
+  private final Counter nativeFrames;
+  private final Counter nativeFrameBytes;
+  private final Counter controls;
+  private final Counter unknownControls;
+  private final Counter rateLimitedControls;
+
+  public GameMetrics(final MeterRegistry registry) {
+    tick =
+        Timer.builder("game.tick")
+            .description("Time to tick all rooms")
+            .publishPercentileHistogram()
+            .register(registry);
+    overrun =
+        Timer.builder("game.tick.overrun")
+            .description("Time a tick took more than its share of a second")
+            .publishPercentileHistogram()
+            .register(registry);
+    for (final TickPhase phase : TickPhase.values()) {
+      phases[phase.ordinal()] =
+          Timer.builder("game.tick.phase")
+              .description("Time spent in a part of the tick of a room")
+              .tag("phase", phase.getTag())
+              .register(registry);
+    }
+    for (final WebSocketTopic topic : WebSocketTopic.values()) {
+      messages[topic.ordinal()] = messagesSent(registry, topic.getName());
+      bytes[topic.ordinal()] = bytesSent(registry, topic.getName());
+    }
+    // Binary frames to native websocket clients, which have no STOMP topic
+    nativeFrames = messagesSent(registry, NATIVE_FRAME);
+    nativeFrameBytes = bytesSent(registry, NATIVE_FRAME);
+    controls =
+        Counter.builder("game.controls.received")
+            .description("Control codes received from clients")
+            .register(registry);
+    unknownControls = droppedControls(registry, "unknown");
+    rateLimitedControls = droppedControls(registry, "rate-limited");
+  }
+
+  private static Counter messagesSent(final MeterRegistry registry, final String topic) {
+    return Counter.builder("game.messages.sent")
+        .description("Websocket messages sent")
+        .tag("topic", topic)
+        .register(registry);
+  }
+
+  private static Counter bytesSent(final MeterRegistry registry, final String topic) {
+    return Counter.builder("game.messages.bytes")
+        .description("Payload bytes of the websocket messages sent")
+        .baseUnit("bytes")
+        .tag("topic", topic)
+        .register(registry);
+  }
+
+  private static Counter droppedControls(final MeterRegistry registry, final String reason) {
+    return Counter.builder("game.controls.dropped")
+        .description("Control codes dropped before they reached the game")
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  /**
+   * Record the time all rooms took to tick.
+   *
+   * @param budgetNanos time a tick may take at the tick rate
+   */
+  public void tick(final long nanos, final long budgetNanos) {
+    tick.record(nanos, TimeUnit.NANOSECONDS);
+    if (nanos > budgetNanos) overrun.record(nanos - budgetNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Record the time spent in a phase, started at the given {@link System#nanoTime()}. */
+  public void phase(final TickPhase phase, final long startNanos) {
+    phases[phase.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void sent(final WebSocketTopic topic, final int payloadBytes) {
+    messages[topic.ordinal()].increment();
+    bytes[topic.ordinal()].increment(payloadBytes);
+  }
+
+  public void sentNativeFrame(final int payloadBytes) {
+    nativeFrames.increment();
+    nativeFrameBytes.increment(payloadBytes);
+  }
+
+  public void controlReceived() {
+    controls.increment();
+  }
+
+  public void controlUnknown() {
+    unknownControls.increment();
+  }
+
+  public void controlRateLimited() {
+    rateLimitedControls.increment();
+  }
+}
@@ -0,0 +1,69 @@
+package org.jacobjob.game.service;
+
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.TokenBucket;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks the control codes of clients before they reach the game. Unknown codes are dropped, and
+ * each session has a token bucket in its attributes, so a client holding a key or flooding the
+ * server only gets the control rate through. What gets through is coalesced by the room until the
+ * next tick.
+ */
+@Slf4j
+@Service
+public class InboundControls {
+  private static final String BUCKET = InboundControls.class.getName() + ".bucket";
+
+  private final GameBoardService gameBoardService;
+  private final GameProperties properties;
+  private final GameMetrics metrics;
+
+  public InboundControls(
+      final GameBoardService gameBoardService,
+      final GameProperties properties,
+      final GameMetrics metrics) {
+    this.gameBoardService = gameBoardService;
+    this.properties = properties;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Hand a control code of a session to the game of a room.
+   *
+   * @param sessionAttributes attributes of the websocket session, holding its token bucket; null
+   *     to not limit the rate
+   * @return whether the control code was handed to the game
+   */
+  public boolean receive(
+      final Map<String, Object> sessionAttributes,
+      final GameState state,
+      final String controlCode) {
+    final ControlCode code = ControlCode.of(controlCode);
+    if (code == null) {
+      metrics.controlUnknown();
+      log.debug("Ignored unknown control code for room {}", state.roomId);
+      return false;
+    }
+    if (!takeToken(sessionAttributes)) {
+      metrics.controlRateLimited();
+      return false;
+    }
+    gameBoardService.processKeys(state, code);
+    return true;
+  }
+
+  private boolean takeToken(final Map<String, Object> sessionAttributes) {
+    if (sessionAttributes == null || properties.getControlRate() <= 0) return true;
+    final TokenBucket bucket =
+        (TokenBucket)
+            sessionAttributes.computeIfAbsent(
+                BUCKET,
+                key -> new TokenBucket(properties.getControlRate(), properties.getControlBurst()));
+    return bucket.tryTake(System.nanoTime());
+  }
+}
@@ -0,0 +1,388 @@
+package org.jacobjob.game.service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.OverflowPolicy;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Sends STOMP messages off the tick thread. Each destination has its own bounded queue, drained by
+ * one task at a time, so messages to a destination keep their order while destinations do not wait
+ * for each other. When a queue is full, the overflow policy decides which messages are dropped; a
+ * message can carry a callback to run when it is dropped, for example to send a keyframe next.
+ * Frames build on the frames before them, so a full frame queue drops all its frames: the next
+ * frame is a keyframe, and no frame is ever sent on top of a dropped one.
+ *
+ * <p>The queue of a destination, and the task draining it, are kept until the destination is
+ * unsubscribed from or its room closes, so sending a message in a steady game allocates nothing.
+ */
+@Slf4j
+@Service
+@ManagedResource(
+    objectName = "org.jacobjob.game:name=OutboundPublisher",
+    description = "Queues of outbound websocket messages")
+public class OutboundPublisher {
+
+  private static final Runnable NOTHING = () -> {};
+  private static final int TOPICS = WebSocketTopic.values().length;
+
+  private final SimpMessagingTemplate template;
+  private final GameProperties properties;
+  private final GameMetrics metrics;
+  private final Executor executor;
+  private final Map<String, RoomLanes> rooms = new ConcurrentHashMap<>();
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  /** Lanes of a room: one per topic, and one per topic for each session with a queue of its own. */
+  private static final class RoomLanes {
+    private final Lane[] topics = new Lane[TOPICS];
+    private final Map<String, Lane[]> sessions = new HashMap<>();
+  }
+
+  /**
+   * Queue of the messages to one destination, a ring of payloads with their drop callbacks. Its
+   * drain task is scheduled when a message arrives and the task is not scheduled yet.
+   */
+  private final class Lane {
+    private final String sessionId;
+    private final WebSocketTopic topic;
+    private final String destination;
+    private final Object[] payloads;
+    private final Runnable[] onDrops;
+    private int head = 0;
+    private int size = 0;
+    private boolean closed = false;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainer = this::drain;
+
+    /** The converted message tells the size of the payload on the wire. */
+    private final MessagePostProcessor measure;
+
+    private Lane(final String sessionId, final WebSocketTopic topic, final String destination) {
+      this.sessionId = sessionId;
+      this.topic = topic;
+      this.destination = destination;
+      final int capacity = Math.max(1, properties.getOutboundQueueSize());
+      payloads = new Object[capacity];
+      onDrops = new Runnable[capacity];
+      measure =
+          converted -> {
+            metrics.sent(topic, sizeOf(converted.getPayload()));
+            return converted;
+          };
+    }
+
+    private boolean isFull() {
+      return size == payloads.length;
+    }
+
+    private void add(final Object payload, final Runnable onDrop) {
+      final int tail = (head + size++) % payloads.length;
+      payloads[tail] = payload;
+      onDrops[tail] = onDrop;
+    }
+
+    /** Take the oldest message. */
+    private Object poll() {
+      if (size == 0) return null;
+      final Object payload = payloads[head];
+      payloads[head] = null;
+      onDrops[head] = null;
+      head = (head + 1) % payloads.length;
+      size--;
+      return payload;
+    }
+
+    private void dropOldest() {
+      final Runnable onDrop = onDrops[head];
+      poll();
+      drop(onDrop);
+    }
+
+    private void clear() {
+      while (poll() != null) {}
+    }
+
+    /** Send the queued messages in order, until the queue is empty. */
+    private void drain() {
+      while (true) {
+        final Object payload;
+        synchronized (this) {
+          payload = poll();
+        }
+        if (payload != null) {
+          deliver(this, payload);
+          continue;
+        }
+        scheduled.set(false);
+        // A message added before the flag was cleared did not schedule the task: send it now
+        synchronized (this) {
+          if (size == 0) return;
+        }
+        if (!scheduled.compareAndSet(false, true)) return;
+      }
+    }
+  }
+
+  @Autowired
+  public OutboundPublisher(
+      final SimpMessagingTemplate template,
+      final GameProperties properties,
+      final GameMetrics metrics) {
+    this(template, properties, metrics, createExecutor(properties));
+  }
+
+  OutboundPublisher(
+      final SimpMessagingTemplate template,
+      final GameProperties properties,
+      final GameMetrics metrics,
+      final Executor executor) {
+    this.template = template;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.executor = executor;
+  }
+
+  private static ExecutorService createExecutor(final GameProperties properties) {
+    if (properties.getOutboundThreads() == 0) {
+      return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("outbound-", 1).factory());
+    }
+    return Executors.newFixedThreadPool(
+        properties.getOutboundThreads(), Thread.ofPlatform().name("outbound-", 1).factory());
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (executor instanceof ExecutorService service) service.shutdownNow();
+  }
+
+  /** Send to all subscribers of a topic of a room. */
+  public void send(final WebSocketTopic topic, final String roomId, final Object payload) {
+    send(topic, roomId, payload, NOTHING);
+  }
+
+  /**
+   * Send to all subscribers of a topic of a room.
+   *
+   * @param onDrop run when the message is dropped instead of sent
+   */
+  public void send(
+      final WebSocketTopic topic,
+      final String roomId,
+      final Object payload,
+      final Runnable onDrop) {
+    enqueue(lane(null, topic, roomId), payload, onDrop);
+  }
+
+  /**
+   * Send to the queue of a topic of one session, which has no user of its own: its session is the
+   * user.
+   *
+   * @param onDrop run when the message is dropped instead of sent
+   */
+  public void sendToSession(
+      final String sessionId,
+      final WebSocketTopic topic,
+      final String roomId,
+      final Object payload,
+      final Runnable onDrop) {
+    enqueue(lane(sessionId, topic, roomId), payload, onDrop);
+  }
+
+  /** Stop sending to the queue of a topic of one session, which unsubscribed from it. */
+  public void unsubscribe(final String sessionId, final WebSocketTopic topic, final String roomId) {
+    final RoomLanes room = rooms.get(roomId);
+    if (room == null) return;
+    synchronized (room) {
+      final Lane[] lanes = room.sessions.get(sessionId);
+      if (lanes == null) return;
+      close(lanes[topic.ordinal()]);
+      lanes[topic.ordinal()] = null;
+      if (Arrays.stream(lanes).allMatch(Objects::isNull)) room.sessions.remove(sessionId);
+    }
+  }
+
+  /** Stop sending to the topics of a room, and to the queues of its sessions, once it closed. */
+  public void closeRoom(final String roomId) {
+    final RoomLanes room = rooms.remove(roomId);
+    if (room == null) return;
+    synchronized (room) {
+      Arrays.stream(room.topics).forEach(OutboundPublisher::close);
+      room.sessions.values().stream().flatMap(Arrays::stream).forEach(OutboundPublisher::close);
+    }
+  }
+
+  private static void close(final Lane lane) {
+    if (lane == null) return;
+    synchronized (lane) {
+      lane.closed = true;
+      lane.clear();
+    }
+  }
+
+  /** Find the lane of a destination, or create it on its first message. */
+  private Lane lane(final String sessionId, final WebSocketTopic topic, final String roomId) {
+    final RoomLanes room = rooms.computeIfAbsent(roomId, id -> new RoomLanes());
+    synchronized (room) {
+      Lane[] lanes = room.topics;
+      if (sessionId != null) {
+        lanes = room.sessions.get(sessionId);
+        if (lanes == null) {
+          lanes = new Lane[TOPICS];
+          room.sessions.put(sessionId, lanes);
+        }
+      }
+      Lane lane = lanes[topic.ordinal()];
+      if (lane == null) {
+        final String destination =
+            sessionId == null ? topic.forRoom(roomId) : topic.forClient(roomId);
+        lane = new Lane(sessionId, topic, destination);
+        lanes[topic.ordinal()] = lane;
+      }
+      return lane;
+    }
+  }
+
+  private void enqueue(final Lane lane, final Object payload, final Runnable onDrop) {
+    synchronized (lane) {
+      // The destination is gone: nobody is left to receive the message
+      if (lane.closed) return;
+      if (lane.isFull()) {
+        overflow(lane, payload, onDrop);
+      } else {
+        lane.add(payload, onDrop);
+      }
+    }
+    if (lane.scheduled.compareAndSet(false, true)) executor.execute(lane.drainer);
+  }
+
+  private void overflow(final Lane lane, final Object payload, final Runnable onDrop) {
+    if (lane.topic.isFrame()) {
+      // The queued frames, and the new one, are replaced by one keyframe
+      dropped.addAndGet(lane.size);
+      lane.clear();
+      drop(onDrop);
+      return;
+    }
+    switch (properties.getOutboundOverflow()) {
+      case DROP_OLDEST -> {
+        lane.dropOldest();
+        lane.add(payload, onDrop);
+      }
+      case DROP_NEWEST -> drop(onDrop);
+      case COALESCE -> {
+        while (lane.size > 0) lane.dropOldest();
+        lane.add(payload, onDrop);
+      }
+    }
+  }
+
+  private void drop(final Runnable onDrop) {
+    dropped.incrementAndGet();
+    onDrop.run();
+  }
+
+  private void deliver(final Lane lane, final Object payload) {
+    try {
+      if (lane.sessionId == null) {
+        template.convertAndSend(lane.destination, payload, lane.measure);
+      } else {
+        final SimpMessageHeaderAccessor headers =
+            SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(lane.sessionId);
+        headers.setLeaveMutable(true);
+        template.convertAndSendToUser(
+            lane.sessionId, lane.destination, payload, headers.getMessageHeaders(), lane.measure);
+      }
+      sent.incrementAndGet();
+    } catch (final Exception e) {
+      // This problem seems to occur if a client's token is no longer valid
+      failed.incrementAndGet();
+      log.error(
+          "Unable to send socket message {} to {}: {}",
+          payload.toString(),
+          lane.destination,
+          e.getMessage());
+      log.debug("Trace information for socket message", e);
+    }
+  }
+
+  private static int sizeOf(final Object payload) {
+    if (payload instanceof byte[] bytes) return bytes.length;
+    if (payload instanceof String text) return text.length();
+    return 0;
+  }
+
+  @ManagedAttribute(description = "Messages waiting to be sent, over all destinations")
+  public int getQueueDepth() {
+    int depth = 0;
+    for (final Lane lane : lanes()) {
+      synchronized (lane) {
+        depth += lane.size;
+      }
+    }
+    return depth;
+  }
+
+  @ManagedAttribute(description = "Destinations with messages waiting to be sent")
+  public int getActiveDestinations() {
+    int active = 0;
+    for (final Lane lane : lanes()) {
+      synchronized (lane) {
+        if (lane.size > 0) active++;
+      }
+    }
+    return active;
+  }
+
+  private List<Lane> lanes() {
+    final List<Lane> lanes = new ArrayList<>();
+    for (final RoomLanes room : rooms.values()) {
+      synchronized (room) {
+        lanes.addAll(Arrays.asList(room.topics));
+        room.sessions.values().forEach(sessionLanes -> lanes.addAll(Arrays.asList(sessionLanes)));
+      }
+    }
+    lanes.removeIf(Objects::isNull);
+    return lanes;
+  }
+
+  @ManagedAttribute(description = "Messages sent")
+  public long getSent() {
+    return sent.get();
+  }
+
+  @ManagedAttribute(description = "Messages dropped because their queue was full")
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  @ManagedAttribute(description = "Messages that could not be sent")
+  public long getFailed() {
+    return failed.get();
+  }
+}
@@ -0,0 +1,86 @@
+package org.jacobjob.game.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.model.ClientView;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Native websocket endpoint: binary frames go out, control codes come in as text. The room is
+ * chosen with the {@code room} query parameter. Besides the controls of the game, "view x,y" looks
+ * at a fixed part of the board and "view follow" follows the player again.
+ */
+@Slf4j
+@Component
+@AllArgsConstructor
+public class RawSocketHandler extends TextWebSocketHandler {
+  private static final String ROOM = "room";
+  private static final String VIEW = "view ";
+
+  private final RawSocketService rawSocketService;
+  private final WebSocketService webSocketService;
+  private final InboundControls inboundControls;
+  private final GameStateRepository gameState;
+
+  @Override
+  public void afterConnectionEstablished(final WebSocketSession session) throws Exception {
+    final String roomId = roomOf(session);
+    session.getAttributes().put(ROOM, roomId);
+    // Open the view while the room cannot close, so it never joins a room that is closing
+    if (!gameState.join(roomId, state -> rawSocketService.open(session, roomId))) {
+      log.warn("Unable to open room {}", roomId);
+      session.getAttributes().remove(ROOM);
+      session.close(CloseStatus.POLICY_VIOLATION);
+    }
+  }
+
+  private static String roomOf(final WebSocketSession session) {
+    if (session.getUri() == null) return GameState.DEFAULT_ROOM;
+    final String roomId =
+        UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(ROOM);
+    return roomId == null ? GameState.DEFAULT_ROOM : roomId;
+  }
+
+  @Override
+  protected void handleTextMessage(final WebSocketSession session, final TextMessage message) {
+    final String roomId = (String) session.getAttributes().get(ROOM);
+    final String payload = message.getPayload();
+    if (payload.startsWith(VIEW)) {
+      moveView(session, roomId, payload.substring(VIEW.length()).trim());
+      return;
+    }
+    gameState
+        .find(roomId)
+        .ifPresent(state -> inboundControls.receive(session.getAttributes(), state, payload));
+  }
+
+  private void moveView(final WebSocketSession session, final String roomId, final String view) {
+    final ClientView clientView = rawSocketService.viewOf(session, roomId);
+    if (clientView == null) return;
+    if ("follow".equals(view)) {
+      clientView.follow();
+      return;
+    }
+    final String[] position = view.split(",");
+    try {
+      clientView.lookAt(Integer.parseInt(position[0].trim()), Integer.parseInt(position[1].trim()));
+    } catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      log.debug("Ignored viewport {} of session {}", view, session.getId());
+    }
+  }
+
+  @Override
+  public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) {
+    final String roomId = (String) session.getAttributes().get(ROOM);
+    if (roomId == null) return;
+    rawSocketService.close(session, roomId);
+    webSocketService.closeRoomIfEmpty(roomId);
+  }
+}
@@ -0,0 +1,169 @@
+package org.jacobjob.game.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.BinaryFrameCodec;
+import org.jacobjob.game.model.ClientView;
+import org.jacobjob.game.model.FrameDTO;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Sends binary frames to native websocket clients, without SockJS or STOMP. Each client has a
+ * view of its own, and at most one frame waiting to be sent: the tick never waits for a client.
+ * When a client has not taken its previous frame yet, the next one replaces it as a keyframe, so a
+ * slow client skips frames instead of queueing them. Clients that do not take a frame within the
+ * send time limit are disconnected. Frames are sent one at a time, so the session needs no buffer.
+ */
+@Slf4j
+@Service
+public class RawSocketService {
+
+  private final GameProperties properties;
+  private final GameMetrics metrics;
+
+  /** Clients by room. */
+  private final Map<String, List<Client>> clients = new ConcurrentHashMap<>();
+
+  private final ExecutorService senders =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("raw-socket-", 1).factory());
+
+  private final AtomicLong coalescedFrames = new AtomicLong();
+
+  /** A native websocket client, and the latest frame not sent to it yet. */
+  private static final class Client {
+    private final WebSocketSession session;
+    private final ClientView view;
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    /** {@link System#currentTimeMillis()} the frame being sent was started at; 0 when idle. */
+    private volatile long sendStarted = 0;
+
+    private Client(final WebSocketSession session, final ClientView view) {
+      this.session = session;
+      this.view = view;
+    }
+  }
+
+  public RawSocketService(final GameProperties properties, final GameMetrics metrics) {
+    this.properties = properties;
+    this.metrics = metrics;
+  }
+
+  /** Start sending the frames of a room to a session. */
+  public void open(final WebSocketSession session, final String roomId) {
+    final ClientView view = new ClientView(session.getId(), roomId, WebSocketTopic.FRAME_BINARY);
+    clients
+        .computeIfAbsent(roomId, id -> new CopyOnWriteArrayList<>())
+        .add(new Client(session, view));
+  }
+
+  public void close(final WebSocketSession session, final String roomId) {
+    final List<Client> roomClients = clients.get(roomId);
+    if (roomClients == null) return;
+    roomClients.removeIf(client -> client.view.getSessionId().equals(session.getId()));
+    if (roomClients.isEmpty()) clients.remove(roomId, roomClients);
+  }
+
+  public boolean hasClients(final String roomId) {
+    final List<Client> roomClients = clients.get(roomId);
+    return roomClients != null && !roomClients.isEmpty();
+  }
+
+  /** View of a session, to move its viewport; null if the session has no frames in the room. */
+  public ClientView viewOf(final WebSocketSession session, final String roomId) {
+    final List<Client> roomClients = clients.get(roomId);
+    if (roomClients == null) return null;
+    for (final Client client : roomClients) {
+      if (client.view.getSessionId().equals(session.getId())) return client.view;
+    }
+    return null;
+  }
+
+  @PreDestroy
+  public void stop() {
+    senders.shutdownNow();
+  }
+
+  /** Frames replaced by a next frame before they were sent, over all clients. */
+  public long getCoalescedFrames() {
+    return coalescedFrames.get();
+  }
+
+  /** Hand each client of the room the next frame of its view, on the tick thread. */
+  public void publish(final GameState state) {
+    final List<Client> roomClients = clients.get(state.roomId);
+    if (roomClients == null) return;
+    for (final Client client : roomClients) {
+      if (!client.session.isOpen()) continue;
+      final long sendStarted = client.sendStarted;
+      if (sendStarted > 0
+          && System.currentTimeMillis() - sendStarted > properties.getSocketSendTimeLimit()) {
+        disconnect(client, CloseStatus.SESSION_NOT_RELIABLE);
+        continue;
+      }
+      if (client.pending.get() != null) {
+        // The previous frame was not taken yet: replace it with one that holds everything
+        client.view.getFrameTracker().requestKeyframe();
+        coalescedFrames.incrementAndGet();
+      }
+      final FrameDTO frame =
+          client.view.nextFrame(
+              state,
+              state.currentViewGrid(properties.getBoardWidth(), properties.getBoardHeight()),
+              GameBoardService.VIEW_PORT_WIDTH,
+              GameBoardService.VIEW_PORT_HEIGHT,
+              properties.getViewMargin(),
+              properties.getKeyframeInterval());
+      if (frame == null) continue;
+      client.pending.set(BinaryFrameCodec.encode(frame));
+      if (client.sending.compareAndSet(false, true)) senders.execute(() -> send(client));
+    }
+  }
+
+  /** Send the pending frames of a client, one at a time. */
+  private void send(final Client client) {
+    try {
+      byte[] frame;
+      while ((frame = client.pending.getAndSet(null)) != null) {
+        metrics.sentNativeFrame(frame.length);
+        client.sendStarted = System.currentTimeMillis();
+        client.session.sendMessage(new BinaryMessage(frame));
+        client.sendStarted = 0;
+      }
+    } catch (final IOException | RuntimeException e) {
+      log.debug("Unable to send frame to session {}", client.view.getSessionId(), e);
+      disconnect(client, CloseStatus.SESSION_NOT_RELIABLE);
+    } finally {
+      client.sending.set(false);
+    }
+    // A frame handed over while finishing up is sent as well
+    if (client.pending.get() != null && client.sending.compareAndSet(false, true)) {
+      senders.execute(() -> send(client));
+    }
+  }
+
+  private void disconnect(final Client client, final CloseStatus status) {
+    try {
+      client.session.close(status);
+    } catch (final IOException e) {
+      log.debug("Unable to close session {}", client.view.getSessionId(), e);
+    }
+  }
+}
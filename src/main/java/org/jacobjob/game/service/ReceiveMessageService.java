@@ -1,8 +1,14 @@
 package org.jacobjob.game.service;
 
+import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
 @Slf4j
@@ -10,12 +16,54 @@ import org.springframework.stereotype.Controller;
 @Controller
 public class ReceiveMessageService {
 
-  private GameBoardService gameBoardService;
+  private InboundControls inboundControls;
+  private GameStateRepository gameState;
+  private WebSocketService webSocketService;
 
   @SuppressWarnings("unused")
   @MessageMapping("/controls")
-  public void handle(final String controlCode) {
-    log.debug("Received: {}", controlCode);
-    gameBoardService.processKeys(controlCode);
+  public void handle(
+      @Header(name = SimpMessageHeaderAccessor.SESSION_ATTRIBUTES, required = false)
+          final Map<String, Object> sessionAttributes,
+      final String controlCode) {
+    handle(sessionAttributes, GameState.DEFAULT_ROOM, controlCode);
+  }
+
+  /** Hand a control code to a room; the session attributes hold the rate limit of the session. */
+  @SuppressWarnings("unused")
+  @MessageMapping("/controls/{roomId}")
+  public void handle(
+      @Header(name = SimpMessageHeaderAccessor.SESSION_ATTRIBUTES, required = false)
+          final Map<String, Object> sessionAttributes,
+      @DestinationVariable final String roomId,
+      final String controlCode) {
+    log.debug("Received for room {}: {}", roomId, controlCode);
+    gameState
+        .find(roomId)
+        .ifPresentOrElse(
+            state -> inboundControls.receive(sessionAttributes, state, controlCode),
+            () -> log.debug("Ignored controls for closed room {}", roomId));
+  }
+
+  /**
+   * Move the viewport of the frames in the client queues of this session: "x,y" looks at a fixed
+   * part of the board, "follow" follows the player again.
+   */
+  @SuppressWarnings("unused")
+  @MessageMapping("/viewport")
+  public void viewPort(
+      @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) final String sessionId,
+      final String viewPort) {
+    if ("follow".equals(viewPort)) {
+      webSocketService.follow(sessionId);
+      return;
+    }
+    final String[] position = viewPort.split(",");
+    try {
+      webSocketService.lookAt(
+          sessionId, Integer.parseInt(position[0].trim()), Integer.parseInt(position[1].trim()));
+    } catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      log.debug("Ignored viewport {} of session {}", viewPort, sessionId);
+    }
   }
 }
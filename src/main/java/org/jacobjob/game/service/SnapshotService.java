@@ -0,0 +1,198 @@
+package org.jacobjob.game.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.Animal;
+import org.jacobjob.game.model.GameSnapshotCodec;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.springframework.stereotype.Service;
+
+/**
+ * Saves the rooms to a snapshot file, and restores them on startup, so a restart continues the
+ * games instead of setting up new boards. The game loop captures the rooms between ticks, as
+ * encoded copies; writing them to the file happens on a thread of its own, so the tick never waits
+ * for the disk. The file is written next to the previous snapshot, and then moved over it. Rooms
+ * only close when their last client leaves, so a restored room that no client joins within the
+ * grace period is closed, instead of being ticked and saved forever.
+ */
+@Slf4j
+@Service
+public class SnapshotService {
+
+  private final GameStateRepository gameState;
+  private final GameProperties properties;
+  private final WebSocketService webSocketService;
+
+  private final ExecutorService writer =
+      Executors.newSingleThreadExecutor(Thread.ofPlatform().name("snapshot-writer").factory());
+  private final AtomicBoolean writing = new AtomicBoolean();
+  private long lastCapture = System.nanoTime();
+
+  /** Restored rooms no client joined yet, with the {@link System#nanoTime()} to close them at. */
+  private final Map<String, Long> restoredRooms = new ConcurrentHashMap<>();
+
+  public SnapshotService(
+      final GameStateRepository gameState,
+      final GameProperties properties,
+      final WebSocketService webSocketService) {
+    this.gameState = gameState;
+    this.properties = properties;
+    this.webSocketService = webSocketService;
+  }
+
+  public boolean isEnabled() {
+    return properties.getSnapshotFile() != null && !properties.getSnapshotFile().isBlank();
+  }
+
+  private Path file() {
+    return Path.of(properties.getSnapshotFile());
+  }
+
+  /**
+   * Capture the rooms when the snapshot interval passed, to be written in the background. Only to
+   * be called by the game loop, between ticks; a capture is skipped while the last one is still
+   * being written.
+   */
+  public void afterTick() {
+    if (!isEnabled()) return;
+    final long now = System.nanoTime();
+    if (!restoredRooms.isEmpty()) closeAbandonedRooms(now);
+    if (now - lastCapture < TimeUnit.SECONDS.toNanos(properties.getSnapshotInterval())) return;
+    if (!writing.compareAndSet(false, true)) return;
+    lastCapture = now;
+    final List<byte[]> rooms = capture();
+    writer.execute(
+        () -> {
+          try {
+            write(rooms);
+          } catch (final IOException e) {
+            log.error("Unable to write game snapshot {}", file(), e);
+          } finally {
+            writing.set(false);
+          }
+        });
+  }
+
+  /** Close the restored rooms that still have no client once their grace period is over. */
+  void closeAbandonedRooms(final long now) {
+    restoredRooms
+        .entrySet()
+        .removeIf(
+            room -> {
+              if (now - room.getValue() < 0) return false;
+              webSocketService.closeRoomIfEmpty(room.getKey());
+              return true;
+            });
+  }
+
+  /** Capture and write the rooms right away, once the game loop has stopped. */
+  public void save() {
+    if (!isEnabled()) return;
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(5, TimeUnit.SECONDS)) log.warn("Game snapshot still writing");
+      write(capture());
+      log.info("Saved game snapshot {}", file());
+    } catch (final IOException e) {
+      log.error("Unable to write game snapshot {}", file(), e);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Rooms with a board, encoded. */
+  List<byte[]> capture() {
+    final List<byte[]> rooms = new ArrayList<>();
+    for (final GameState state : gameState.getStates()) {
+      if (state.player != null) rooms.add(GameSnapshotCodec.encodeRoom(state));
+    }
+    return rooms;
+  }
+
+  void write(final List<byte[]> rooms) throws IOException {
+    final Path file = file();
+    final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    if (file.getParent() != null) Files.createDirectories(file.getParent());
+    long size = GameSnapshotCodec.HEADER_SIZE;
+    for (final byte[] room : rooms) {
+      size += room.length;
+    }
+    try (final FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      GameSnapshotCodec.writeHeader(buffer, rooms.size());
+      for (final byte[] room : rooms) {
+        buffer.put(room);
+      }
+      buffer.force();
+    }
+    Files.move(
+        temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Put the rooms of the snapshot file back, before the game loop starts. Rooms of a board of
+   * another size than configured are not restored.
+   *
+   * @return amount of rooms restored
+   */
+  public int restore() {
+    if (!isEnabled() || !Files.exists(file())) return 0;
+    int restored = 0;
+    try (final FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ)) {
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      final int rooms = GameSnapshotCodec.readHeader(buffer);
+      for (int i = 0; i < rooms; i++) {
+        final GameState state = GameSnapshotCodec.decodeRoom(buffer);
+        if (!fitsBoard(state)) {
+          log.warn("Not restoring room {}: the board size has changed", state.roomId);
+        } else if (gameState.restore(state)) {
+          restored++;
+          restoredRooms.put(
+              state.roomId,
+              System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getRestoredRoomGrace()));
+        }
+      }
+      log.info("Restored {} rooms from game snapshot {}", restored, file());
+    } catch (final IOException | RuntimeException e) {
+      log.error("Unable to restore game snapshot {}", file(), e);
+    }
+    return restored;
+  }
+
+  private boolean fitsBoard(final GameState state) {
+    if (state.animals.isEmpty()) return true;
+    final Animal animal = state.animals.getFirst();
+    return animal.getMaxX() == properties.getBoardWidth()
+        && animal.getMaxY() == properties.getBoardHeight();
+  }
+
+  /** Stop writing; the snapshot on shutdown is saved by the game loop before. */
+  @PreDestroy
+  public void stop() {
+    writer.shutdownNow();
+  }
+}
@@ -1,74 +1,302 @@
 package org.jacobjob.game.service;
 
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import lombok.extern.slf4j.Slf4j;
+import org.jacobjob.game.config.GameProperties;
 import org.jacobjob.game.model.Animal;
 import org.jacobjob.game.model.AnimalDTO;
 import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.BinaryFrameCodec;
+import org.jacobjob.game.model.ClientView;
+import org.jacobjob.game.model.FrameDTO;
 import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.PublishMode;
 import org.jacobjob.game.model.WebSocketTopic;
 import org.jacobjob.game.repository.GameStateRepository;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 @Slf4j
 @Service
 public class WebSocketService {
 
-  private final SimpMessagingTemplate template;
+  private static final int TOPICS = WebSocketTopic.values().length;
+
+  private final OutboundPublisher publisher;
   private final GameStateRepository gameState;
+  private final GameProperties properties;
+  private final RawSocketService rawSocketService;
+
+  /** Topic and room of each subscription, by session id and subscription id. */
+  private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+  /** Amount of subscriptions to each topic, by room, to be read by the tick without allocating. */
+  private final Map<String, AtomicIntegerArray> topicSubscriptions = new ConcurrentHashMap<>();
+
+  /** Views of the clients with a frame queue of their own, by room. */
+  private final Map<String, List<ClientView>> clientViews = new ConcurrentHashMap<>();
+
+  /** Subscription to a topic of a room, or with a view to the client queue of the topic. */
+  private record Subscription(WebSocketTopic topic, String roomId, ClientView view) {}
 
   public WebSocketService(
-      final SimpMessagingTemplate template, final GameStateRepository gameStateRepository) {
-    this.template = template;
+      final OutboundPublisher publisher,
+      final GameStateRepository gameStateRepository,
+      final GameProperties properties,
+      final RawSocketService rawSocketService) {
+    this.publisher = publisher;
     gameState = gameStateRepository;
+    this.properties = properties;
+    this.rawSocketService = rawSocketService;
   }
 
-  @Async
-  public void updateAnimal(final Animal animal) {
-    if (isOutsideViewPort(animal)) {
+  /**
+   * Send the visible animals of this tick, as one frame or one message per animal. Native
+   * websocket clients always get frames.
+   */
+  public void updateAnimals(final GameState state) {
+    rawSocketService.publish(state);
+    if (properties.getPublishMode() == PublishMode.ANIMAL) {
+      for (int i = 0; i < state.animals.size(); i++) {
+        updateAnimal(state, state.animals.get(i));
+      }
+      return;
+    }
+    updateClientViews(state);
+    // Only build and encode the formats clients have chosen; clients joining get a keyframe
+    final boolean json = isSubscribed(state, WebSocketTopic.FRAME);
+    final boolean binary = isSubscribed(state, WebSocketTopic.FRAME_BINARY);
+    if (!json && !binary) return;
+    // Immutable snapshot of this tick; the animals themselves are not read after this
+    for (int i = 0; i < state.animals.size(); i++) {
+      final Animal animal = state.animals.get(i);
+      if (animal.isAlive() && !isOutsideViewPort(state, animal)) {
+        state.frameTracker.addVisible(animal);
+      }
+    }
+    final FrameDTO frame =
+        state.frameTracker.nextFrame(
+            state.tick, state.viewPortX, state.viewPortY, properties.getKeyframeInterval());
+    if (frame == null) return;
+    if (json) {
+      sendFrame(state, WebSocketTopic.FRAME, frame);
+    }
+    if (binary) {
+      sendFrame(state, WebSocketTopic.FRAME_BINARY, payload(WebSocketTopic.FRAME_BINARY, frame));
+    }
+  }
+
+  /** Send each client with a queue of its own the animals in its own viewport. */
+  private void updateClientViews(final GameState state) {
+    final List<ClientView> views = clientViews.get(state.roomId);
+    if (views == null) return;
+    for (final ClientView view : views) {
+      final FrameDTO frame = nextFrame(view, state);
+      if (frame != null) sendToClient(view, payload(view.getTopic(), frame));
+    }
+  }
+
+  FrameDTO nextFrame(final ClientView view, final GameState state) {
+    return view.nextFrame(
+        state,
+        state.currentViewGrid(properties.getBoardWidth(), properties.getBoardHeight()),
+        GameBoardService.VIEW_PORT_WIDTH,
+        GameBoardService.VIEW_PORT_HEIGHT,
+        properties.getViewMargin(),
+        properties.getKeyframeInterval());
+  }
+
+  /** Look at a fixed part of the board, instead of following the player. */
+  public void lookAt(final String sessionId, final int x, final int y) {
+    clientViewsOf(sessionId).forEach(view -> view.lookAt(x, y));
+  }
+
+  /** Follow the player again. */
+  public void follow(final String sessionId) {
+    clientViewsOf(sessionId).forEach(ClientView::follow);
+  }
+
+  private List<ClientView> clientViewsOf(final String sessionId) {
+    final String session = sessionId + "/";
+    return subscriptions.entrySet().stream()
+        .filter(entry -> entry.getKey().startsWith(session) && entry.getValue().view() != null)
+        .map(entry -> entry.getValue().view())
+        .toList();
+  }
+
+  private static Object payload(final WebSocketTopic topic, final FrameDTO frame) {
+    if (topic == WebSocketTopic.FRAME) return frame;
+    // SockJS only carries text, so the binary frame travels as base64
+    return Base64.getEncoder().encodeToString(BinaryFrameCodec.encode(frame));
+  }
+
+  /**
+   * Subscribing to a topic of a room opens the room. Clients choose the frame format by subscribing
+   * to the JSON or the binary frame topic; clients joining or reconnecting need all animals, not
+   * just the changes. Subscribing to a frame topic in the client queue ({@code /user/queue/...})
+   * gives the client frames of its own viewport.
+   */
+  @EventListener
+  public void onSubscribe(final SessionSubscribeEvent event) {
+    final SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+    final String destination = headers.getDestination();
+    for (final WebSocketTopic topic : WebSocketTopic.values()) {
+      final String roomId = topic.roomOf(destination);
+      if (roomId != null) {
+        subscribe(subscriptionKey(headers), new Subscription(topic, roomId, null));
+        return;
+      }
+      final String clientRoomId = topic.isFrame() ? topic.clientRoomOf(destination) : null;
+      if (clientRoomId != null) {
+        final ClientView view = new ClientView(headers.getSessionId(), clientRoomId, topic);
+        subscribe(subscriptionKey(headers), new Subscription(topic, clientRoomId, view));
+        return;
+      }
+    }
+  }
+
+  /** Subscribe while the room cannot close, so a client never joins a room that is closing. */
+  private void subscribe(final String key, final Subscription subscription) {
+    final String roomId = subscription.roomId();
+    final boolean joined =
+        gameState.join(
+            roomId,
+            state -> {
+              subscriptions.put(key, subscription);
+              if (subscription.view() != null) {
+                clientViews
+                    .computeIfAbsent(roomId, id -> new CopyOnWriteArrayList<>())
+                    .add(subscription.view());
+                return;
+              }
+              topicSubscriptions
+                  .computeIfAbsent(roomId, id -> new AtomicIntegerArray(TOPICS))
+                  .incrementAndGet(subscription.topic().ordinal());
+              if (subscription.topic().isFrame()) state.frameTracker.requestKeyframe();
+            });
+    if (!joined) log.warn("Unable to open room {}", roomId);
+  }
+
+  @EventListener
+  public void onUnsubscribe(final SessionUnsubscribeEvent event) {
+    final Subscription subscription =
+        subscriptions.remove(subscriptionKey(SimpMessageHeaderAccessor.wrap(event.getMessage())));
+    if (subscription != null) unsubscribed(subscription);
+  }
+
+  @EventListener
+  public void onDisconnect(final SessionDisconnectEvent event) {
+    final String session = event.getSessionId() + "/";
+    subscriptions.entrySet().stream()
+        .filter(entry -> entry.getKey().startsWith(session))
+        .toList()
+        .forEach(
+            entry -> {
+              subscriptions.remove(entry.getKey());
+              unsubscribed(entry.getValue());
+            });
+  }
+
+  private void unsubscribed(final Subscription subscription) {
+    final String roomId = subscription.roomId();
+    if (subscription.view() != null) {
+      final ClientView view = subscription.view();
+      final List<ClientView> views = clientViews.get(roomId);
+      if (views != null) views.remove(view);
+      publisher.unsubscribe(view.getSessionId(), view.getTopic(), roomId);
+    } else {
+      final AtomicIntegerArray counts = topicSubscriptions.get(roomId);
+      if (counts != null) counts.decrementAndGet(subscription.topic().ordinal());
+    }
+    closeRoomIfEmpty(roomId);
+  }
+
+  /**
+   * Close a room once no STOMP or native websocket client is left in it. Clients cannot join the
+   * room meanwhile, so none joins a room that is then closed.
+   */
+  public void closeRoomIfEmpty(final String roomId) {
+    gameState.close(
+        roomId,
+        state -> {
+          if (subscriptions.values().stream().anyMatch(s -> s.roomId().equals(roomId))
+              || rawSocketService.hasClients(roomId)) {
+            return false;
+          }
+          log.info("Closing room {}", roomId);
+          topicSubscriptions.remove(roomId);
+          clientViews.remove(roomId);
+          publisher.closeRoom(roomId);
+          return true;
+        });
+  }
+
+  private boolean isSubscribed(final GameState state, final WebSocketTopic topic) {
+    final AtomicIntegerArray counts = topicSubscriptions.get(state.roomId);
+    return counts != null && counts.get(topic.ordinal()) > 0;
+  }
+
+  private static String subscriptionKey(final SimpMessageHeaderAccessor headers) {
+    return headers.getSessionId() + "/" + headers.getSubscriptionId();
+  }
+
+  /**
+   * Send a single animal; in frame mode the change goes out with the next frame. The animal is
+   * copied on the calling thread, so only the copy is handed to the sender.
+   */
+  public void updateAnimal(final GameState state, final Animal animal) {
+    if (properties.getPublishMode() == PublishMode.FRAME || isOutsideViewPort(state, animal)) {
       return;
     }
     WebSocketTopic topic = WebSocketTopic.SNAKE;
     if (animal.getAnimalType() == AnimalType.POLICE) {
       topic = WebSocketTopic.POLICE;
     }
-    // Reduce data sending to browser
-    final AnimalDTO dto = new AnimalDTO(animal);
-
-    // Correct X and Y to viewport coordinates
-    final GameState state = gameState.getState();
-    dto.setX(animal.getX() - state.viewPortX);
-    dto.setY(animal.getY() - state.viewPortY);
-    sendMessage(topic, dto);
+    // Reduce data sending to browser, with X and Y corrected to viewport coordinates
+    sendMessage(state, topic, new AnimalDTO(animal, state.viewPortX, state.viewPortY));
   }
 
-  private boolean isOutsideViewPort(final Animal animal) {
-    final GameState state = gameState.getState();
+  private boolean isOutsideViewPort(final GameState state, final Animal animal) {
     return animal.getX() > state.viewPortX + GameBoardService.VIEW_PORT_WIDTH
         || animal.getY() > state.viewPortY + GameBoardService.VIEW_PORT_HEIGHT
         || animal.getX() < state.viewPortX
         || animal.getY() < state.viewPortY;
   }
 
-  @Async
-  public void sendNews(final String message) {
-    sendMessage(WebSocketTopic.NEWS, message);
+  public void sendNews(final GameState state, final String message) {
+    sendMessage(state, WebSocketTopic.NEWS, message);
   }
 
-  @Async
-  public void updateScore(final Animal animal) {
-    sendMessage(WebSocketTopic.SCORE, animal.getScore());
+  public void updateScore(final GameState state, final int score) {
+    sendMessage(state, WebSocketTopic.SCORE, score);
   }
 
-  private void sendMessage(final WebSocketTopic topic, final Object message) {
-    try {
-      template.convertAndSend(topic.toString(), message);
-    } catch (final Exception e) {
-      // This problem seems to occur if a client's token is no longer valid
-      log.error(
-          "Unable to send socket message {} to {}: {}", message.toString(), topic, e.getMessage());
-      log.debug("Trace information for socket message", e);
-    }
+  /** Send to the queue of one client; when the frame is dropped, the next one is a keyframe. */
+  private void sendToClient(final ClientView view, final Object message) {
+    publisher.sendToSession(
+        view.getSessionId(),
+        view.getTopic(),
+        view.getRoomId(),
+        message,
+        view.getFrameTracker().keyframeRequest());
+  }
+
+  /** Send a frame to a topic of the room; when the frame is dropped, the next one is a keyframe. */
+  private void sendFrame(final GameState state, final WebSocketTopic topic, final Object frame) {
+    publisher.send(topic, state.roomId, frame, state.frameTracker.keyframeRequest());
+  }
+
+  private void sendMessage(
+      final GameState state, final WebSocketTopic topic, final Object message) {
+    publisher.send(topic, state.roomId, message);
   }
 }
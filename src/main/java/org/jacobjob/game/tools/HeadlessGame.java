@@ -0,0 +1,45 @@
+package org.jacobjob.game.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ForkJoinPool;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.jacobjob.game.service.EventJournal;
+import org.jacobjob.game.service.GameBoardService;
+import org.jacobjob.game.service.GameMetrics;
+import org.jacobjob.game.service.OutboundPublisher;
+import org.jacobjob.game.service.RawSocketService;
+import org.jacobjob.game.service.WebSocketService;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+/** The services of a game without a websocket server: messages are built, and then discarded. */
+final class HeadlessGame implements AutoCloseable {
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  final GameMetrics metrics = new GameMetrics(registry);
+  final GameStateRepository repository;
+  final WebSocketService webSocketService;
+  final GameBoardService gameBoardService;
+
+  private final OutboundPublisher publisher;
+  private final RawSocketService rawSocketService;
+  private final ForkJoinPool tickPool = new ForkJoinPool();
+
+  HeadlessGame(final GameProperties properties) {
+    repository = new GameStateRepository(properties);
+    publisher =
+        new OutboundPublisher(
+            new SimpMessagingTemplate((message, timeout) -> true), properties, metrics);
+    rawSocketService = new RawSocketService(properties, metrics);
+    webSocketService = new WebSocketService(publisher, repository, properties, rawSocketService);
+    gameBoardService =
+        new GameBoardService(
+            webSocketService, properties, tickPool, metrics, new EventJournal(properties));
+  }
+
+  @Override
+  public void close() {
+    tickPool.shutdownNow();
+    publisher.stop();
+    rawSocketService.stop();
+  }
+}
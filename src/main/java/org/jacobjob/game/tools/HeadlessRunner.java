@@ -0,0 +1,164 @@
+package org.jacobjob.game.tools;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.CollisionMode;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.TickMode;
+import org.jacobjob.game.model.TickPhase;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.jacobjob.game.service.GameBoardService;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+/**
+ * Ticks the game of one room without a websocket server, as fast as possible or at a fixed rate,
+ * and reports the ticks per second and the time spent in each phase of a tick. Messages are built
+ * as for real clients, then discarded. Options:
+ *
+ * <ul>
+ *   <li>{@code --ticks}: ticks to run (default 10000)
+ *   <li>{@code --rate}: ticks per second, 0 for as fast as possible (default 0)
+ *   <li>{@code --seed}: seed of the board (default 42)
+ *   <li>{@code --snakes}: snakes on the board, with a quarter as much police and a third as much
+ *       gold (default 30)
+ *   <li>{@code --board}: width x height of the board (default 2400x1400)
+ *   <li>{@code --tick-mode}: sequential or parallel (default sequential)
+ *   <li>{@code --collision-mode}: grid or sweep (default grid)
+ *   <li>{@code --viewers}: clients receiving binary frames of their own viewport (default 0)
+ *   <li>{@code --lod-interval}: ticks between moves of animals far from the viewport (default 1)
+ *   <li>{@code --lod-distance}: pixels outside the viewport from which animals are far (default
+ *       300)
+ *   <li>{@code --publish-rate}: frames sent to the viewers per second of game time, 0 for every
+ *       tick (default 0)
+ * </ul>
+ */
+public final class HeadlessRunner {
+
+  private HeadlessRunner() {}
+
+  public static void main(final String[] args) {
+    final ToolOptions options = new ToolOptions(args);
+    final GameProperties properties = new GameProperties();
+    properties.setSeed(options.getLong("seed", 42));
+    properties.setAmountOfSnakes(options.getInt("snakes", properties.getAmountOfSnakes()));
+    final String[] board = options.get("board", "2400x1400").split("x");
+    properties.setBoardWidth(Integer.parseInt(board[0]));
+    properties.setBoardHeight(Integer.parseInt(board[1]));
+    properties.setTickMode(
+        TickMode.valueOf(options.get("tick-mode", "sequential").toUpperCase(Locale.ROOT)));
+    properties.setCollisionMode(
+        CollisionMode.valueOf(options.get("collision-mode", "grid").toUpperCase(Locale.ROOT)));
+    properties.setLodInterval(options.getInt("lod-interval", properties.getLodInterval()));
+    properties.setLodDistance(options.getInt("lod-distance", properties.getLodDistance()));
+    properties.setPublishRate(options.getInt("publish-rate", properties.getPublishRate()));
+    final int ticks = options.getInt("ticks", 10_000);
+    final int rate = options.getInt("rate", 0);
+    if (rate > 0) properties.setTickRate(rate);
+
+    try (final HeadlessGame game = new HeadlessGame(properties)) {
+      run(game, options.getInt("viewers", 0), ticks, rate);
+    }
+  }
+
+  private static void run(
+      final HeadlessGame game, final int viewers, final int ticks, final int rate) {
+    final GameBoardService gameBoardService = game.gameBoardService;
+    final GameState state = game.repository.getState();
+    for (int i = 0; i < viewers; i++) {
+      game.webSocketService.onSubscribe(subscribe("viewer-" + i, state.roomId));
+    }
+    // The game starts paused, and the first board is set up after a delay
+    gameBoardService.processKeys(state, ControlCode.PAUSE);
+    while (state.player == null) {
+      gameBoardService.tick(state);
+    }
+
+    final long[] durations = new long[ticks];
+    final long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+    final long firstTick = state.tick;
+    final long start = System.nanoTime();
+    long nextTick = start;
+    for (int i = 0; i < ticks; i++) {
+      if (interval > 0) {
+        long now;
+        while ((now = System.nanoTime()) < nextTick) LockSupport.parkNanos(nextTick - now);
+        nextTick += interval;
+      }
+      final long tickStart = System.nanoTime();
+      gameBoardService.tick(state);
+      durations[i] = System.nanoTime() - tickStart;
+      game.metrics.tick(durations[i], interval > 0 ? interval : Long.MAX_VALUE);
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    report(game.registry, durations, elapsed, state.tick - firstTick);
+  }
+
+  private static SessionSubscribeEvent subscribe(final String session, final String roomId) {
+    final StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+    headers.setSessionId(session);
+    headers.setSubscriptionId("sub-0");
+    headers.setDestination("/user" + WebSocketTopic.FRAME_BINARY.forClient(roomId));
+    return new SessionSubscribeEvent(
+        HeadlessRunner.class,
+        MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+  }
+
+  private static void report(
+      final SimpleMeterRegistry registry,
+      final long[] durations,
+      final long elapsed,
+      final long played) {
+    final double seconds = elapsed / 1e9;
+    System.out.printf(
+        Locale.ROOT,
+        "%d ticks in %.2f s: %.0f ticks per second; %d ticks waited for a board reset%n",
+        durations.length,
+        seconds,
+        durations.length / seconds,
+        durations.length - played);
+    final long[] sorted = durations.clone();
+    Arrays.sort(sorted);
+    System.out.printf(
+        Locale.ROOT,
+        "tick latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+        percentile(sorted, 0.5) / 1e6,
+        percentile(sorted, 0.99) / 1e6,
+        percentile(sorted, 0.999) / 1e6,
+        percentile(sorted, 1) / 1e6);
+    System.out.printf(Locale.ROOT, "%-20s %10s %12s %8s%n", "phase", "count", "mean (ms)", "share");
+    double total = 0;
+    for (final TickPhase phase : TickPhase.values()) {
+      total += timer(registry, phase).totalTime(TimeUnit.NANOSECONDS);
+    }
+    for (final TickPhase phase : TickPhase.values()) {
+      final Timer timer = timer(registry, phase);
+      System.out.printf(
+          Locale.ROOT,
+          "%-20s %10d %12.4f %7.1f%%%n",
+          phase.getTag(),
+          timer.count(),
+          timer.mean(TimeUnit.NANOSECONDS) / 1e6,
+          total > 0 ? 100 * timer.totalTime(TimeUnit.NANOSECONDS) / total : 0);
+    }
+  }
+
+  private static Timer timer(final SimpleMeterRegistry registry, final TickPhase phase) {
+    return registry.get("game.tick.phase").tag("phase", phase.getTag()).timer();
+  }
+
+  /** Value at a fraction of the sorted values. */
+  static long percentile(final long[] sorted, final double fraction) {
+    if (sorted.length == 0) return 0;
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+  }
+}
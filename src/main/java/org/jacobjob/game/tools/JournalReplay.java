@@ -0,0 +1,148 @@
+package org.jacobjob.game.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.JournalCodec;
+import org.jacobjob.game.service.GameBoardService;
+
+/**
+ * Replays the records of a journal on a game board service, and checks each tick against the
+ * checksum of the original tick. A room diverging from its journal goes on from its own state, and
+ * is set back to the journal at the next segment that holds the room in full.
+ */
+class JournalReplay implements JournalCodec.Listener {
+  private final GameProperties properties;
+  private final GameBoardService gameBoardService;
+  private final Map<String, Room> rooms = new HashMap<>();
+  private final List<String> divergences = new ArrayList<>();
+
+  private long ticks = 0;
+  private long mismatches = 0;
+  private long resyncs = 0;
+  private long failures = 0;
+  private long skipped = 0;
+
+  /** A replayed room, and the seed of its first board, once read. */
+  private static final class Room {
+    private GameState state;
+    private Long seed;
+    private boolean diverged;
+
+    private Room(final GameState state) {
+      this.state = state;
+    }
+  }
+
+  JournalReplay(final GameProperties properties, final GameBoardService gameBoardService) {
+    this.properties = properties;
+    this.gameBoardService = gameBoardService;
+  }
+
+  /** Play the next segment with the settings it was written with. */
+  void header(final JournalCodec.Header header) {
+    properties.setBoardWidth(header.boardWidth());
+    properties.setBoardHeight(header.boardHeight());
+    properties.setAmountOfSnakes(header.amountOfSnakes());
+    properties.setTickRate(header.tickRate());
+    properties.setTrigonometry(header.trigonometry());
+    properties.setLodDistance(header.lodDistance());
+    properties.setLodInterval(header.lodInterval());
+    properties.setSeekDistance(header.seekDistance());
+    properties.setCollisionMode(header.collisionMode());
+  }
+
+  @Override
+  public void start(final String roomId, final GameState state) {
+    final Room room = rooms.get(roomId);
+    if (room == null) {
+      rooms.put(roomId, new Room(state));
+    } else if (room.state.checksum() != state.checksum()) {
+      diverged(roomId, room, state.tick);
+      resyncs++;
+      room.state = state;
+    }
+  }
+
+  @Override
+  public void board(final String roomId, final long seed) {
+    final Room room = rooms.get(roomId);
+    // Only the first board needs its seed, next boards follow from it
+    if (room != null && room.state.random == null) room.seed = seed;
+  }
+
+  @Override
+  public void control(final String roomId, final String controlCode) {
+    final Room room = rooms.get(roomId);
+    final ControlCode code = ControlCode.of(controlCode);
+    if (room != null && code != null) room.state.controls.offer(code);
+  }
+
+  @Override
+  public void tick(final String roomId, final long tick, final long checksum) {
+    final Room room = rooms.get(roomId);
+    if (room == null) {
+      // Written before the room was in full in the segment
+      skipped++;
+      return;
+    }
+    if (room.seed != null) {
+      properties.setSeed(room.seed);
+      room.seed = null;
+    }
+    try {
+      gameBoardService.tick(room.state);
+    } catch (final RuntimeException e) {
+      failures++;
+    }
+    ticks++;
+    if (room.state.tick != tick || room.state.checksum() != checksum) {
+      mismatches++;
+      diverged(roomId, room, tick);
+    }
+  }
+
+  private void diverged(final String roomId, final Room room, final long tick) {
+    if (room.diverged) return;
+    room.diverged = true;
+    divergences.add("room " + roomId + " diverged at tick " + tick);
+  }
+
+  GameState state(final String roomId) {
+    final Room room = rooms.get(roomId);
+    return room == null ? null : room.state;
+  }
+
+  /** First divergence of each room that diverged. */
+  List<String> getDivergences() {
+    return divergences;
+  }
+
+  long getTicks() {
+    return ticks;
+  }
+
+  /** Ticks that ended with another state than the original. */
+  long getMismatches() {
+    return mismatches;
+  }
+
+  /** Rooms set back to the journal at the start of a segment. */
+  long getResyncs() {
+    return resyncs;
+  }
+
+  /** Ticks that threw an exception. */
+  long getFailures() {
+    return failures;
+  }
+
+  /** Ticks of rooms not seen in full yet. */
+  long getSkipped() {
+    return skipped;
+  }
+}
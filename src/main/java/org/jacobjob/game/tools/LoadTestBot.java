@@ -0,0 +1,221 @@
+package org.jacobjob.game.tools;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+/**
+ * Opens STOMP connections to a running game, like browsers do, steers the players with control
+ * codes, and reports the rate of the messages received and the latency of the updates. The latency
+ * is the time from sending a pause to receiving the news that the game was paused or continued;
+ * each probe pauses the game, and continues it right away. Options:
+ *
+ * <ul>
+ *   <li>{@code --url}: SockJS endpoint of the game (default http://localhost:8080/connect)
+ *   <li>{@code --bots}: connections to open (default 10)
+ *   <li>{@code --room}: room all bots join; by default each bot plays in a room of its own, up to
+ *       the maximum amount of rooms of the game
+ *   <li>{@code --duration}: seconds to run (default 30)
+ *   <li>{@code --format}: binary or json frames (default binary)
+ *   <li>{@code --controls}: steering controls sent per bot per second (default 2)
+ *   <li>{@code --probe-interval}: milliseconds between latency probes (default 1000)
+ * </ul>
+ */
+public final class LoadTestBot {
+
+  private static final String PAUSED = "Game paused";
+  private static final String CONTINUED = "Game continued!";
+
+  private final ToolOptions options;
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+  private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+  private final AtomicLong messages = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong controls = new AtomicLong();
+
+  /** A connection, and the sent times of its pauses that no news came back for yet. */
+  private final class Bot {
+    private final String roomId;
+    private final boolean probing;
+    private final Queue<Long> probes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean paused = true;
+    private StompSession session;
+
+    private Bot(final String roomId, final boolean probing) {
+      this.roomId = roomId;
+      this.probing = probing;
+    }
+
+    private void subscribe(final WebSocketTopic frameTopic) {
+      session.subscribe(
+          "/user" + frameTopic.forClient(roomId),
+          handler(
+              payload -> {
+                messages.incrementAndGet();
+                bytes.addAndGet(payload.length);
+                // The first frame tells the board is set up: start the game
+                if (probing && started.compareAndSet(false, true)) sendPause();
+              }));
+      session.subscribe(
+          WebSocketTopic.NEWS.forRoom(roomId),
+          handler(
+              payload -> {
+                messages.incrementAndGet();
+                bytes.addAndGet(payload.length);
+                final String news = new String(payload, StandardCharsets.UTF_8);
+                if (probing && (news.contains(PAUSED) || news.contains(CONTINUED))) {
+                  final Long sent = probes.poll();
+                  if (sent != null) latencies.add(System.nanoTime() - sent);
+                  paused = news.contains(PAUSED);
+                  if (paused) sendPause();
+                }
+              }));
+    }
+
+    private void probe() {
+      if (started.get() && !paused && probes.isEmpty()) sendPause();
+    }
+
+    private void sendPause() {
+      probes.add(System.nanoTime());
+      send("pause");
+    }
+
+    private void steer() {
+      if (started.get()) send(ThreadLocalRandom.current().nextBoolean() ? "left" : "right");
+    }
+
+    private void send(final String controlCode) {
+      if (!session.isConnected()) return;
+      session.send("/inbound/controls/" + roomId, controlCode.getBytes(StandardCharsets.UTF_8));
+      controls.incrementAndGet();
+    }
+  }
+
+  private interface PayloadHandler {
+    void handle(byte[] payload);
+  }
+
+  private LoadTestBot(final ToolOptions options) {
+    this.options = options;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new LoadTestBot(new ToolOptions(args)).run();
+  }
+
+  private void run() throws Exception {
+    final String url = options.get("url", "http://localhost:8080/connect");
+    final int amount = options.getInt("bots", 10);
+    final String room = options.get("room", null);
+    final int duration = options.getInt("duration", 30);
+    final WebSocketTopic frameTopic =
+        "json".equals(options.get("format", "binary"))
+            ? WebSocketTopic.FRAME
+            : WebSocketTopic.FRAME_BINARY;
+
+    final WebSocketStompClient client =
+        new WebSocketStompClient(
+            new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+    // Payloads are counted as received, not converted
+    client.setMessageConverter(new SimpleMessageConverter());
+    client.setInboundMessageSizeLimit(4 * 1024 * 1024);
+
+    final List<Bot> bots = new ArrayList<>(amount);
+    for (int i = 0; i < amount; i++) {
+      // In a shared room only the first bot pauses the game, so the news it gets is its own
+      final Bot bot = new Bot(room != null ? room : "bot-" + i, room == null || i == 0);
+      bot.session =
+          client.connectAsync(url, new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+      bot.subscribe(frameTopic);
+      bots.add(bot);
+    }
+    System.out.printf("%d bots connected to %s%n", amount, url);
+
+    final long controlInterval =
+        TimeUnit.SECONDS.toMicros(1) / Math.max(1, options.getInt("controls", 2));
+    final long probeInterval = options.getInt("probe-interval", 1000);
+    for (final Bot bot : bots) {
+      scheduler.scheduleAtFixedRate(
+          bot::steer, controlInterval, controlInterval, TimeUnit.MICROSECONDS);
+      if (bot.probing) {
+        scheduler.scheduleAtFixedRate(
+            bot::probe, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    final long start = System.nanoTime();
+    final long startMessages = messages.get();
+    final long startBytes = bytes.get();
+    Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+    final double seconds = (System.nanoTime() - start) / 1e9;
+    report(seconds, messages.get() - startMessages, bytes.get() - startBytes, amount);
+
+    scheduler.shutdownNow();
+    for (final Bot bot : bots) {
+      if (bot.session.isConnected()) bot.session.disconnect();
+    }
+    client.stop();
+  }
+
+  private void report(
+      final double seconds, final long received, final long receivedBytes, final int amount) {
+    System.out.printf(
+        Locale.ROOT,
+        "received %d messages in %.1f s: %.0f per second, %.1f per bot per second, %.0f kB/s%n",
+        received,
+        seconds,
+        received / seconds,
+        received / seconds / amount,
+        receivedBytes / seconds / 1024);
+    System.out.printf(Locale.ROOT, "sent %d control codes%n", controls.get());
+    final long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    if (sorted.length == 0) {
+      System.out.println("no latency probes answered");
+      return;
+    }
+    System.out.printf(
+        Locale.ROOT,
+        "update latency of %d probes: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+        sorted.length,
+        HeadlessRunner.percentile(sorted, 0.5) / 1e6,
+        HeadlessRunner.percentile(sorted, 0.95) / 1e6,
+        HeadlessRunner.percentile(sorted, 0.99) / 1e6,
+        HeadlessRunner.percentile(sorted, 1) / 1e6);
+  }
+
+  private static StompFrameHandler handler(final PayloadHandler handler) {
+    return new StompFrameHandler() {
+      @Override
+      public Type getPayloadType(final StompHeaders headers) {
+        return byte[].class;
+      }
+
+      @Override
+      public void handleFrame(final StompHeaders headers, final Object payload) {
+        handler.handle((byte[]) payload);
+      }
+    };
+  }
+}
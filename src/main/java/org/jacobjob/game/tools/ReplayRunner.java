@@ -0,0 +1,76 @@
+package org.jacobjob.game.tools;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.JournalCodec;
+import org.jacobjob.game.service.EventJournal;
+
+/**
+ * Replays a game journal as fast as possible, checks every tick against the original, and reports
+ * the ticks per second, so a journal of a real game doubles as a benchmark. Options:
+ *
+ * <ul>
+ *   <li>{@code --journal}: journal directory, or a single segment file (default journal)
+ * </ul>
+ *
+ * Run with {@code mvn -q exec:java -Dexec.mainClass=org.jacobjob.game.tools.ReplayRunner
+ * -Dexec.args="--journal=journal"}. Exits with status 1 when the replay diverged.
+ */
+public final class ReplayRunner {
+
+  private ReplayRunner() {}
+
+  public static void main(final String[] args) throws IOException {
+    final ToolOptions options = new ToolOptions(args);
+    final Path journal = Path.of(options.get("journal", "journal"));
+    final List<Path> segments =
+        Files.isDirectory(journal) ? EventJournal.segments(journal) : List.of(journal);
+    if (segments.isEmpty()) throw new IllegalArgumentException("No journal segments in " + journal);
+
+    final GameProperties properties = new GameProperties();
+    final JournalReplay replay;
+    final long start = System.nanoTime();
+    try (final HeadlessGame game = new HeadlessGame(properties)) {
+      replay = new JournalReplay(properties, game.gameBoardService);
+      for (final Path segment : segments) {
+        replay(segment, replay);
+      }
+    }
+    final double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf(
+        Locale.ROOT,
+        "%d segments, %d ticks in %.2f s: %.0f ticks per second%n",
+        segments.size(),
+        replay.getTicks(),
+        seconds,
+        replay.getTicks() / seconds);
+    System.out.printf(
+        Locale.ROOT,
+        "%d mismatches, %d resyncs, %d failed ticks, %d ticks skipped%n",
+        replay.getMismatches(),
+        replay.getResyncs(),
+        replay.getFailures(),
+        replay.getSkipped());
+    replay.getDivergences().forEach(System.out::println);
+    if (replay.getMismatches() > 0 || replay.getResyncs() > 0) System.exit(1);
+  }
+
+  static void replay(final Path segment, final JournalReplay replay) throws IOException {
+    try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      final MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      replay.header(JournalCodec.readHeader(buffer));
+      if (!JournalCodec.read(buffer, replay)) {
+        System.out.println(segment + " ends with a partial record, which is left out");
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package org.jacobjob.game.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Command line options of the tools, given as {@code --name=value}. */
+class ToolOptions {
+  private final Map<String, String> values = new HashMap<>();
+
+  ToolOptions(final String[] args) {
+    for (final String arg : args) {
+      if (!arg.startsWith("--")) {
+        throw new IllegalArgumentException("Expected --name=value instead of " + arg);
+      }
+      final int equals = arg.indexOf('=');
+      if (equals < 0) {
+        values.put(arg.substring(2), "true");
+      } else {
+        values.put(arg.substring(2, equals), arg.substring(equals + 1));
+      }
+    }
+  }
+
+  String get(final String name, final String defaultValue) {
+    return values.getOrDefault(name, defaultValue);
+  }
+
+  int getInt(final String name, final int defaultValue) {
+    final String value = values.get(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  long getLong(final String name, final long defaultValue) {
+    final String value = values.get(name);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+}
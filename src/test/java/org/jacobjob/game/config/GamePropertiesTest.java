@@ -0,0 +1,38 @@
+package org.jacobjob.game.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+class GamePropertiesTest {
+
+  private final ApplicationContextRunner runner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+          .withUserConfiguration(Settings.class);
+
+  @EnableConfigurationProperties(GameProperties.class)
+  static class Settings {}
+
+  @Test
+  void ratesMayNotBeNegativeNorTickRateZero() {
+    runner
+        .withPropertyValues("game.tick-rate=0")
+        .run(context -> assertThat(context).getFailure().hasStackTraceContaining("tickRate"));
+    runner
+        .withPropertyValues("game.publish-rate=-1", "game.control-rate=-1")
+        .run(
+            context ->
+                assertThat(context)
+                    .getFailure()
+                    .hasStackTraceContaining("publishRate")
+                    .hasStackTraceContaining("controlRate"));
+    runner
+        .withPropertyValues("game.publish-rate=0", "game.control-rate=0")
+        .run(context -> assertThat(context).hasNotFailed());
+  }
+}
@@ -0,0 +1,26 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class AnimalTest {
+
+  @Test
+  void cachedDirectionFollowsTheExactPath() {
+    final GameRandom random = new GameRandom(42);
+    final Animal animal = new Animal(1, AnimalType.SNAKE, 24_000, 14_000, random.split());
+    int x = animal.getX();
+    int y = animal.getY();
+
+    for (int i = 0; i < 10_000; i++) {
+      if (i % 7 == 0) animal.changeOrientation(random.nextDouble() - 0.5d);
+      x += (int) (Math.cos(animal.getOrientation()) * animal.getSpeed());
+      y += (int) (Math.sin(animal.getOrientation()) * animal.getSpeed());
+      animal.step();
+
+      assertThat(animal.getX()).isEqualTo(x);
+      assertThat(animal.getY()).isEqualTo(y);
+    }
+  }
+}
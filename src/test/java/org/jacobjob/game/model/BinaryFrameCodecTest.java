@@ -0,0 +1,52 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BinaryFrameCodecTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void decodesWhatWasEncoded() {
+    final FrameDTO frame = createFrame(50, false);
+
+    final FrameDTO decoded = BinaryFrameCodec.decode(BinaryFrameCodec.encode(frame));
+
+    assertThat(decoded.isKeyframe()).isFalse();
+    assertThat(decoded.getTick()).isEqualTo(frame.getTick());
+    assertThat(decoded.getViewPortX()).isEqualTo(frame.getViewPortX());
+    assertThat(decoded.getViewPortY()).isEqualTo(frame.getViewPortY());
+    assertThat(decoded.getAnimals()).containsExactlyElementsOf(frame.getAnimals());
+    assertThat(decoded.getRemoved()).containsExactlyElementsOf(frame.getRemoved());
+  }
+
+  /** Encoding speed is measured by the FrameEncodingBenchmark. */
+  @Test
+  void binaryFrameIsSmallerThanJson() throws Exception {
+    final FrameDTO frame = createFrame(500, true);
+
+    final int jsonSize = objectMapper.writeValueAsBytes(frame).length;
+    final int binarySize = BinaryFrameCodec.encode(frame).length;
+    final int base64Size =
+        Base64.getEncoder().encodeToString(BinaryFrameCodec.encode(frame)).length();
+    assertThat(binarySize).isLessThan(jsonSize / 4);
+    assertThat(base64Size).isLessThan(jsonSize / 3);
+  }
+
+  private static FrameDTO createFrame(final int amount, final boolean keyframe) {
+    final List<AnimalDTO> animals = new ArrayList<>();
+    final AnimalType[] types = AnimalType.values();
+    for (int i = 1; i <= amount; i++) {
+      animals.add(
+          new AnimalDTO(i * 7 % 2400, i * 13 % 1400, 8 + i % 5, i, types[i % 4], i % 9 != 0));
+    }
+    final List<Integer> removed = keyframe ? List.of() : List.of(amount + 1, amount + 2);
+    return new FrameDTO(keyframe, 1L << 40 | amount, 1200, 700, animals, removed);
+  }
+}
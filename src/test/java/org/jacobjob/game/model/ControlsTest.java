@@ -0,0 +1,66 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ControlsTest {
+
+  private final Controls controls = new Controls();
+
+  @Test
+  void controlsOfATickAreCoalescedIntoTheirNetEffect() {
+    for (int i = 0; i < 30; i++) controls.offer(ControlCode.UP);
+    controls.offer(ControlCode.DOWN);
+    controls.offer(ControlCode.LEFT);
+    controls.offer(ControlCode.RIGHT);
+    controls.offer(ControlCode.RIGHT);
+    controls.offer(ControlCode.PAUSE);
+    controls.offer(ControlCode.PAUSE);
+    controls.offer(ControlCode.RESET);
+    controls.offer(ControlCode.RESET);
+
+    final List<ControlCode> drained = drain(controls);
+
+    assertThat(drained).hasSize(31);
+    assertThat(drained.subList(0, 2)).containsExactly(ControlCode.RESET, ControlCode.RIGHT);
+    assertThat(drained.subList(2, 31)).containsOnly(ControlCode.UP);
+    assertThat(controls.isEmpty()).isTrue();
+    assertThat(drain(controls)).isEmpty();
+  }
+
+  @Test
+  void coalescedControlsCoalesceIntoTheSameControls() {
+    controls.offer(ControlCode.PAUSE);
+    controls.offer(ControlCode.LEFT);
+    controls.offer(ControlCode.LEFT);
+    controls.offer(ControlCode.DOWN);
+    final List<ControlCode> drained = drain(controls);
+
+    // A journal holds the coalesced controls, and a replay coalesces them again
+    drained.forEach(controls::offer);
+
+    assertThat(drain(controls)).isEqualTo(drained);
+  }
+
+  @Test
+  void pauseAndLeftAndRightCancelOut() {
+    controls.offer(ControlCode.PAUSE);
+    controls.offer(ControlCode.LEFT);
+    controls.offer(ControlCode.RIGHT);
+    controls.offer(ControlCode.PAUSE);
+
+    assertThat(controls.isEmpty()).isTrue();
+    assertThat(ControlCode.of("left")).isEqualTo(ControlCode.LEFT);
+    assertThat(ControlCode.of("jump")).isNull();
+    assertThat(ControlCode.of(null)).isNull();
+  }
+
+  private static List<ControlCode> drain(final Controls controls) {
+    final List<ControlCode> drained = new ArrayList<>();
+    controls.drain(drained::add);
+    return drained;
+  }
+}
@@ -0,0 +1,75 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FrameTrackerTest {
+
+  private final GameRandom random = new GameRandom(42);
+  private final Animal snake = new Animal(1, AnimalType.SNAKE, 2400, 1400, random.split());
+  private final Animal gold = new Animal(2, AnimalType.GOLD, 2400, 1400, random.split());
+
+  @Test
+  void sendsOnlyChangesBetweenKeyframes() {
+    final FrameTracker tracker = new FrameTracker();
+
+    final FrameDTO keyframe = tracker.nextFrame(visible(snake, gold), 1, 0, 0, 40);
+    assertThat(keyframe.isKeyframe()).isTrue();
+    assertThat(keyframe.getAnimals()).hasSize(2);
+
+    assertThat(tracker.nextFrame(visible(snake, gold), 1, 0, 0, 40)).isNull();
+
+    snake.step();
+    final FrameDTO moved = tracker.nextFrame(visible(snake, gold), 1, 0, 0, 40);
+    assertThat(moved.isKeyframe()).isFalse();
+    assertThat(moved.getAnimals()).extracting(AnimalDTO::getNumber).containsExactly(1);
+    assertThat(moved.getRemoved()).isEmpty();
+
+    final FrameDTO removed = tracker.nextFrame(visible(gold), 1, 0, 0, 40);
+    assertThat(removed.getAnimals()).isEmpty();
+    assertThat(removed.getRemoved()).containsExactly(1);
+
+    final FrameDTO scrolled = tracker.nextFrame(visible(gold), 1, 10, 0, 40);
+    assertThat(scrolled.getAnimals()).isEmpty();
+    assertThat(scrolled.getViewPortX()).isEqualTo(10);
+  }
+
+  @Test
+  void sendsKeyframePeriodicallyAndOnRequest() {
+    final FrameTracker tracker = new FrameTracker();
+    tracker.nextFrame(visible(snake, gold), 1, 0, 0, 3);
+
+    assertThat(tracker.nextFrame(visible(snake, gold), 1, 0, 0, 3)).isNull();
+    assertThat(tracker.nextFrame(visible(snake, gold), 1, 0, 0, 3)).isNull();
+    assertThat(tracker.nextFrame(visible(snake, gold), 1, 0, 0, 3).isKeyframe()).isTrue();
+
+    tracker.requestKeyframe();
+    assertThat(tracker.nextFrame(visible(snake, gold), 1, 0, 0, 3).getAnimals()).hasSize(2);
+  }
+
+  @Test
+  void reusesCopiesOfUnchangedAnimals() {
+    final FrameTracker tracker = new FrameTracker();
+    tracker.addVisible(snake);
+    tracker.addVisible(gold);
+    final FrameDTO keyframe = tracker.nextFrame(1, 0, 0, 40);
+
+    tracker.addVisible(snake);
+    tracker.addVisible(gold);
+    assertThat(tracker.nextFrame(1, 0, 0, 40)).isNull();
+
+    snake.step();
+    tracker.addVisible(snake);
+    tracker.addVisible(gold);
+    final FrameDTO moved = tracker.nextFrame(1, 0, 0, 40);
+    assertThat(moved.getAnimals()).containsExactly(new AnimalDTO(snake));
+    assertThat(moved.getAnimals().getFirst()).isNotSameAs(keyframe.getAnimals().getFirst());
+  }
+
+  private static List<AnimalDTO> visible(final Animal... animals) {
+    return Arrays.stream(animals).map(AnimalDTO::new).toList();
+  }
+}
@@ -0,0 +1,106 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class SweepAndPruneTest {
+
+  private static final int MAX_X = 2400;
+  private static final int MAX_Y = 1400;
+  private static final int REACH = 64;
+
+  @Test
+  void sweepFindsEachCloseOrCrossingPairOnce() {
+    final List<Animal> animals = createAnimals(1500);
+    final SweepAndPrune sweep = new SweepAndPrune();
+    for (int tick = 1; tick <= 5; tick++) {
+      final int steps = tick;
+      sweep.start(animals);
+      final int[] startX = animals.stream().mapToInt(Animal::getX).toArray();
+      final int[] startY = animals.stream().mapToInt(Animal::getY).toArray();
+      for (int step = 0; step < steps; step++) {
+        animals.forEach(Animal::step);
+      }
+      sweep.sweep(animals, REACH);
+
+      final Set<Long> found = new HashSet<>();
+      for (int pair = 0; pair < sweep.pairCount(); pair++) {
+        final int first = Math.min(sweep.first(pair), sweep.second(pair));
+        final int second = Math.max(sweep.first(pair), sweep.second(pair));
+        assertThat(found.add(key(first, second))).isTrue();
+      }
+      final Set<Long> expected = new HashSet<>();
+      for (int i = 0; i < animals.size(); i++) {
+        for (int j = i + 1; j < animals.size(); j++) {
+          if (overlaps(animals, startX, startY, i, j)) expected.add(key(i, j));
+        }
+      }
+      assertThat(found).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void sweepKeepsFindingPairsAfterAnimalsAreRemoved() {
+    final List<Animal> animals = createAnimals(600);
+    final SweepAndPrune sweep = new SweepAndPrune();
+    sweep.sweep(animals, REACH);
+    animals.removeIf(animal -> animal.getNumber() % 4 == 0);
+    animals.add(new Animal(1000, AnimalType.SNAKE, MAX_X, MAX_Y, new GameRandom(1)));
+
+    sweep.sweep(animals, REACH);
+    final int[] x = animals.stream().mapToInt(Animal::getX).toArray();
+    final int[] y = animals.stream().mapToInt(Animal::getY).toArray();
+    int expected = 0;
+    for (int i = 0; i < animals.size(); i++) {
+      for (int j = i + 1; j < animals.size(); j++) {
+        if (overlaps(animals, x, y, i, j)) expected++;
+      }
+    }
+    assertThat(sweep.pairCount()).isEqualTo(expected);
+  }
+
+  @Test
+  void sweptOverlapCatchesAnimalsPassingThroughEachOther() {
+    // A fast animal jumps over a small one standing still
+    assertThat(SweepAndPrune.sweptOverlap(0, 100, 200, 104, 100, 100, 100, 100, 8)).isTrue();
+    // Both moving, crossing each other halfway
+    assertThat(SweepAndPrune.sweptOverlap(0, 0, 100, 100, 100, 0, 0, 100, 8)).isTrue();
+    // Passing by at a distance
+    assertThat(SweepAndPrune.sweptOverlap(0, 100, 200, 100, 100, 120, 100, 120, 8)).isFalse();
+    // Standing still, the same as the overlap test of the end positions
+    assertThat(SweepAndPrune.sweptOverlap(10, 10, 10, 10, 17, 3, 17, 3, 8)).isTrue();
+    assertThat(SweepAndPrune.sweptOverlap(10, 10, 10, 10, 18, 3, 18, 3, 8)).isFalse();
+  }
+
+  private static boolean overlaps(
+      final List<Animal> animals,
+      final int[] startX,
+      final int[] startY,
+      final int i,
+      final int j) {
+    final Animal a = animals.get(i);
+    final Animal b = animals.get(j);
+    return Math.min(a.getX(), startX[i]) <= Math.max(b.getX(), startX[j]) + REACH
+        && Math.min(b.getX(), startX[j]) <= Math.max(a.getX(), startX[i]) + REACH
+        && Math.min(a.getY(), startY[i]) <= Math.max(b.getY(), startY[j]) + REACH
+        && Math.min(b.getY(), startY[j]) <= Math.max(a.getY(), startY[i]) + REACH;
+  }
+
+  private static long key(final int first, final int second) {
+    return (long) first << 32 | second;
+  }
+
+  private static List<Animal> createAnimals(final int amount) {
+    final GameRandom random = new GameRandom(amount);
+    final List<Animal> animals = new ArrayList<>();
+    for (int i = 1; i <= amount; i++) {
+      animals.add(new Animal(i, AnimalType.SNAKE, MAX_X, MAX_Y, random.split()));
+    }
+    return animals;
+  }
+}
@@ -0,0 +1,89 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TargetGridTest {
+
+  private static final int MAX_X = 2400;
+  private static final int MAX_Y = 1400;
+
+  @Test
+  void nearestIsSameAsFullScan() {
+    final List<Animal> animals = createAnimals(3000);
+    final TargetGrid grid = new TargetGrid();
+    grid.rebuild(animals, MAX_X, MAX_Y);
+
+    for (final Animal animal : animals) {
+      for (final int distance : new int[] {50, 300, 5000}) {
+        assertThat(grid.nearest(animal.getX(), animal.getY(), AnimalType.GOLD, distance))
+            .isSameAs(scan(animals, animal, AnimalType.GOLD, distance));
+      }
+      assertThat(grid.nearest(animal.getX(), animal.getY(), AnimalType.PLAYER, 5000))
+          .isSameAs(scan(animals, animal, AnimalType.PLAYER, 5000));
+    }
+  }
+
+  @Test
+  void nearestFollowsMovedGold() {
+    final List<Animal> animals = createAnimals(500);
+    final TargetGrid grid = new TargetGrid();
+    grid.rebuild(animals, MAX_X, MAX_Y);
+
+    animals.stream()
+        .filter(Animal::isGold)
+        .forEach(
+            gold -> {
+              final int oldX = gold.getX();
+              final int oldY = gold.getY();
+              gold.createAnimal();
+              grid.move(gold, oldX, oldY);
+            });
+
+    for (final Animal animal : animals) {
+      assertThat(grid.nearest(animal.getX(), animal.getY(), AnimalType.GOLD, 5000))
+          .isSameAs(scan(animals, animal, AnimalType.GOLD, 5000));
+    }
+  }
+
+  @Test
+  void nothingIsFoundWithoutTargets() {
+    final TargetGrid grid = new TargetGrid();
+    assertThat(grid.nearest(10, 10, AnimalType.GOLD, 5000)).isNull();
+
+    grid.rebuild(List.of(), MAX_X, MAX_Y);
+    assertThat(grid.nearest(10, 10, AnimalType.GOLD, 5000)).isNull();
+  }
+
+  private static List<Animal> createAnimals(final int amount) {
+    final GameRandom random = new GameRandom(amount);
+    final List<Animal> animals = new ArrayList<>();
+    animals.add(new Animal(1, AnimalType.PLAYER, MAX_X, MAX_Y, random.split()));
+    for (int i = 2; i <= amount; i++) {
+      final AnimalType type = i % 5 == 0 ? AnimalType.GOLD : AnimalType.SNAKE;
+      animals.add(new Animal(i, type, MAX_X, MAX_Y, random.split()));
+    }
+    return animals;
+  }
+
+  private static Animal scan(
+      final List<Animal> animals, final Animal from, final AnimalType type, final int distance) {
+    return animals.stream()
+        .filter(animal -> animal.getAnimalType() == type && animal.isAlive())
+        .filter(animal -> squaredDistance(from, animal) <= (long) distance * distance)
+        .min(
+            Comparator.comparingLong((Animal animal) -> squaredDistance(from, animal))
+                .thenComparingInt(Animal::getNumber))
+        .orElse(null);
+  }
+
+  private static long squaredDistance(final Animal from, final Animal to) {
+    final long dx = to.getX() - from.getX();
+    final long dy = to.getY() - from.getY();
+    return dx * dx + dy * dy;
+  }
+}
@@ -0,0 +1,41 @@
+package org.jacobjob.game.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+  private static final long START = 123_456_789L;
+
+  @Test
+  void burstIsAllowedAndThenTheRate() {
+    final TokenBucket bucket = new TokenBucket(20, 10);
+
+    assertThat(taken(bucket, START, 100)).isEqualTo(10);
+    // Refilled at 20 tokens per second
+    assertThat(taken(bucket, START + TimeUnit.MILLISECONDS.toNanos(100), 100)).isEqualTo(2);
+    // Never fuller than its capacity
+    assertThat(taken(bucket, START + TimeUnit.SECONDS.toNanos(60), 100)).isEqualTo(10);
+  }
+
+  @Test
+  void steadySenderBelowTheRateIsNeverLimited() {
+    final TokenBucket bucket = new TokenBucket(20, 1);
+    final long interval = TimeUnit.MILLISECONDS.toNanos(50);
+
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(bucket.tryTake(START + i * interval)).isTrue();
+    }
+    assertThat(bucket.tryTake(START + 999 * interval + 1)).isFalse();
+  }
+
+  private static int taken(final TokenBucket bucket, final long nanoTime, final int attempts) {
+    int taken = 0;
+    for (int i = 0; i < attempts; i++) {
+      if (bucket.tryTake(nanoTime)) taken++;
+    }
+    return taken;
+  }
+}
@@ -0,0 +1,53 @@
+package org.jacobjob.game.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.junit.jupiter.api.Test;
+
+class GameStateRepositoryTest {
+
+  private final GameProperties properties = new GameProperties();
+
+  @Test
+  void opensRoomsUpToTheMaximum() {
+    properties.setMaxRooms(2);
+    final GameStateRepository repository = new GameStateRepository(properties);
+
+    assertThat(repository.findOrCreate("room-1"))
+        .hasValueSatisfying(state -> assertThat(state.roomId).isEqualTo("room-1"));
+    assertThat(repository.findOrCreate("room-1")).containsSame(repository.find("room-1").get());
+    assertThat(repository.findOrCreate("room-2")).isEmpty();
+    assertThat(repository.getStates()).hasSize(2);
+
+    repository.close("room-1", state -> false);
+    assertThat(repository.find("room-1")).isPresent();
+    repository.close("room-1", state -> true);
+    repository.close(GameState.DEFAULT_ROOM, state -> true);
+    assertThat(repository.find("room-1")).isEmpty();
+    assertThat(repository.getState().roomId).isEqualTo(GameState.DEFAULT_ROOM);
+  }
+
+  @Test
+  void rejectsInvalidRoomIds() {
+    final GameStateRepository repository = new GameStateRepository(properties);
+
+    assertThat(repository.findOrCreate("../snakes")).isEmpty();
+    assertThat(repository.findOrCreate("")).isEmpty();
+    assertThat(repository.findOrCreate(null)).isEmpty();
+  }
+
+  @Test
+  void topicsAreSeparatedPerRoom() {
+    assertThat(WebSocketTopic.FRAME.forRoom(GameState.DEFAULT_ROOM)).isEqualTo("/topic/frame");
+    assertThat(WebSocketTopic.FRAME.forRoom("room-1")).isEqualTo("/topic/rooms/room-1/frame");
+
+    assertThat(WebSocketTopic.FRAME.roomOf("/topic/frame")).isEqualTo(GameState.DEFAULT_ROOM);
+    assertThat(WebSocketTopic.FRAME.roomOf("/topic/rooms/room-1/frame")).isEqualTo("room-1");
+    assertThat(WebSocketTopic.FRAME.roomOf("/topic/rooms/room-1/frame.binary")).isNull();
+    assertThat(WebSocketTopic.FRAME_BINARY.roomOf("/topic/rooms/room-1/frame.binary"))
+        .isEqualTo("room-1");
+  }
+}
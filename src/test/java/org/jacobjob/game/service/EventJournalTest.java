@@ -0,0 +1,98 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.JournalCodec;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventJournalTest {
+
+  @TempDir private Path directory;
+
+  private final GameProperties properties = new GameProperties();
+
+  @Test
+  void roomsDropRecordsInsteadOfWaitingForTheDisk() throws Exception {
+    properties.setJournalDirectory(directory.toString());
+    final CountDownLatch disk = new CountDownLatch(1);
+    final EventJournal journal =
+        new EventJournal(
+            properties,
+            writer ->
+                new Thread(
+                    () -> {
+                      try {
+                        disk.await();
+                      } catch (final InterruptedException e) {
+                        return;
+                      }
+                      writer.run();
+                    }));
+    final GameBoardService gameBoardService =
+        new GameBoardService(
+            mock(WebSocketService.class),
+            properties,
+            ForkJoinPool.commonPool(),
+            new GameMetrics(new SimpleMeterRegistry()),
+            journal);
+    final GameState state = new GameStateRepository(properties).getState();
+    gameBoardService.tick(state);
+
+    // Far more tick records than the batches hold, while the writer does not write anything
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(10),
+        () -> {
+          for (int i = 0; i < 500_000; i++) {
+            journal.endTick(state);
+          }
+        });
+    assertThat(journal.getDroppedRecords()).isPositive();
+
+    gameBoardService.tick(state);
+    disk.countDown();
+    journal.stop();
+    final List<GameState> starts = new ArrayList<>();
+    for (final Path segment : EventJournal.segments(directory)) {
+      read(segment, starts);
+    }
+    // Written in full at the first tick, and again after records were dropped
+    assertThat(starts).hasSize(2);
+  }
+
+  private static void read(final Path segment, final List<GameState> starts) throws Exception {
+    final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+    JournalCodec.readHeader(buffer);
+    JournalCodec.read(
+        buffer,
+        new JournalCodec.Listener() {
+          @Override
+          public void start(final String roomId, final GameState room) {
+            starts.add(room);
+          }
+
+          @Override
+          public void board(final String roomId, final long seed) {}
+
+          @Override
+          public void control(final String roomId, final String controlCode) {}
+
+          @Override
+          public void tick(final String roomId, final long tick, final long checksum) {}
+        });
+  }
+}
@@ -0,0 +1,553 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.Animal;
+import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.CollisionMode;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameRandom;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.TickMode;
+import org.jacobjob.game.model.TickPhase;
+import org.jacobjob.game.model.Trigonometry;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+class GameBoardServiceTest {
+
+  private static final long MAX_BYTES_PER_TICK = 256;
+  /** Splitting the search for close animals over the pool allocates tasks for each thread. */
+  private static final long MAX_PARALLEL_BYTES_PER_TICK = 1024;
+  private static final long MAX_PARALLEL_BYTES_PER_THREAD = 1024;
+  /** A frame to a topic and one to a client view, with their DTOs and encoding. */
+  private static final long MAX_FRAME_BYTES_PER_TICK = 8 * 1024;
+
+  private final GameProperties properties = new GameProperties();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final GameMetrics metrics = new GameMetrics(registry);
+  private final GameBoardService gameBoardService =
+      new GameBoardService(
+          mock(WebSocketService.class),
+          properties,
+          ForkJoinPool.commonPool(),
+          metrics,
+          new EventJournal(properties));
+
+  @Test
+  void controlsAreAppliedByTheNextTick() {
+    final GameState state = startedGame();
+    final double orientation = state.player.getOrientation();
+
+    gameBoardService.processKeys(state, ControlCode.PAUSE);
+    gameBoardService.processKeys(state, ControlCode.RIGHT);
+    assertThat(state.pause).isTrue();
+    assertThat(state.player.getOrientation()).isEqualTo(orientation);
+
+    gameBoardService.tick(state);
+    assertThat(state.pause).isFalse();
+    assertThat(state.player.getOrientation()).isNotEqualTo(orientation);
+    assertThat(state.controls.isEmpty()).isTrue();
+  }
+
+  @Test
+  void controlsFromOtherThreadsDoNotDisturbTheTick() throws InterruptedException {
+    final GameState state = startedGame();
+    gameBoardService.processKeys(state, ControlCode.PAUSE);
+    final Thread client =
+        Thread.ofPlatform()
+            .start(
+                () -> {
+                  for (int i = 0; i < 10_000; i++) {
+                    gameBoardService.processKeys(
+                        state, i % 2 == 0 ? ControlCode.LEFT : ControlCode.RIGHT);
+                  }
+                });
+    for (int i = 0; i < 100; i++) {
+      gameBoardService.tick(state);
+    }
+    client.join();
+    gameBoardService.tick(state);
+
+    assertThat(state.controls.isEmpty()).isTrue();
+  }
+
+  @Test
+  void parallelCollisionsMatchSequentialCollisions() {
+    final GameState sequential = crowdedGame();
+    final GameState parallel = crowdedGame();
+    final GameProperties parallelProperties = new GameProperties();
+    parallelProperties.setTickMode(TickMode.PARALLEL);
+    final GameBoardService parallelService =
+        new GameBoardService(
+            mock(WebSocketService.class),
+            parallelProperties,
+            ForkJoinPool.commonPool(),
+            metrics,
+            new EventJournal(parallelProperties));
+
+    for (int i = 0; i < 5; i++) {
+      gameBoardService.handleCollisions(sequential);
+      parallelService.handleCollisions(parallel);
+    }
+
+    assertSameAnimals(sequential, parallel);
+    assertThat(parallel.animals.stream().filter(animal -> !animal.isAlive())).isNotEmpty();
+  }
+
+  @Test
+  void gridFindsTheSameCloseAnimalsAsAFullScan() {
+    final GameState state = crowdedGame();
+
+    for (int i = 0; i < 20; i++) {
+      step(state);
+      gameBoardService.handleCollisions(state);
+      final int detectDistance = state.player.getSize() * 8;
+      assertThat(gridPairs(state, detectDistance))
+          .isNotEmpty()
+          .containsExactlyElementsOf(scannedPairs(state, detectDistance));
+    }
+    // Caught gold moves elsewhere in the grid
+    assertThat(state.animals.stream().filter(animal -> animal.getScore() > 0)).isNotEmpty();
+  }
+
+  /** Close animals found in the grid left by the collisions, in list order. */
+  private static List<String> gridPairs(final GameState state, final int detectDistance) {
+    final List<String> pairs = new ArrayList<>();
+    for (final Animal animal : state.animals) {
+      if (!animal.isAlive()) continue;
+      final int found = state.spatialGrid.query(animal.getX(), animal.getY(), detectDistance);
+      for (int i = 0; i < found; i++) {
+        final Animal other = state.animals.get(state.spatialGrid.foundIndex(i));
+        if (GameBoardService.isClose(animal, other, detectDistance)) {
+          pairs.add(animal.getNumber() + "-" + other.getNumber());
+        }
+      }
+    }
+    return pairs;
+  }
+
+  /** Close animals found by comparing every animal with every other one. */
+  private static List<String> scannedPairs(final GameState state, final int detectDistance) {
+    final List<String> pairs = new ArrayList<>();
+    for (final Animal animal : state.animals) {
+      if (!animal.isAlive()) continue;
+      for (final Animal other : state.animals) {
+        if (GameBoardService.isClose(animal, other, detectDistance)) {
+          pairs.add(animal.getNumber() + "-" + other.getNumber());
+        }
+      }
+    }
+    return pairs;
+  }
+
+  private static void step(final GameState state) {
+    for (final Animal animal : state.animals) {
+      animal.step();
+      animal.safeGuardEdges();
+    }
+  }
+
+  @Test
+  void sameSeedReplaysSameGame() {
+    properties.setSeed(42L);
+
+    final GameState first = playedGame(gameBoardService, 300);
+    final GameState second = playedGame(gameBoardService, 300);
+
+    assertThat(first.seed).isEqualTo(42L);
+    assertSameAnimals(first, second);
+  }
+
+  @Test
+  void parallelTicksMatchSequentialTicks() {
+    properties.setSeed(7L);
+    final GameProperties parallelProperties = new GameProperties();
+    parallelProperties.setSeed(7L);
+    parallelProperties.setTickMode(TickMode.PARALLEL);
+    final GameBoardService parallelService =
+        new GameBoardService(
+            mock(WebSocketService.class),
+            parallelProperties,
+            ForkJoinPool.commonPool(),
+            metrics,
+            new EventJournal(parallelProperties));
+
+    assertSameAnimals(playedGame(gameBoardService, 300), playedGame(parallelService, 300));
+  }
+
+  @Test
+  void steadyTicksAllocateAlmostNothing() {
+    final GameStateRepository repository = new GameStateRepository(properties);
+    final GameBoardService service = allocationService(webSocketService(repository));
+
+    assertThat(allocatedPerTick(service, repository.getState()))
+        .isLessThanOrEqualTo(MAX_BYTES_PER_TICK);
+  }
+
+  @Test
+  void steadyParallelTicksOnlyAllocateTheirTasks() {
+    properties.setTickMode(TickMode.PARALLEL);
+    final GameStateRepository repository = new GameStateRepository(properties);
+    final GameBoardService service = allocationService(webSocketService(repository));
+
+    assertThat(allocatedPerTick(service, repository.getState()))
+        .isLessThanOrEqualTo(
+            MAX_PARALLEL_BYTES_PER_TICK
+                + MAX_PARALLEL_BYTES_PER_THREAD * ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  @Test
+  void steadyFramesStayWithinTheirAllocationBudget() {
+    final GameStateRepository repository = new GameStateRepository(properties);
+    final WebSocketService webSocketService = webSocketService(repository);
+    final GameBoardService service = allocationService(webSocketService);
+    webSocketService.onSubscribe(subscribe("spectator", "/topic/frame"));
+    webSocketService.onSubscribe(subscribe("player", "/user/queue/frame.binary"));
+
+    assertThat(allocatedPerTick(service, repository.getState()))
+        .isLessThanOrEqualTo(MAX_FRAME_BYTES_PER_TICK);
+  }
+
+  @Test
+  void rotatedDirectionsStayCloseToExactDirections() {
+    final GameProperties rotatedProperties = new GameProperties();
+    rotatedProperties.setTrigonometry(Trigonometry.ROTATED);
+    final GameBoardService rotatedService =
+        new GameBoardService(
+            mock(WebSocketService.class),
+            rotatedProperties,
+            ForkJoinPool.commonPool(),
+            metrics,
+            new EventJournal(rotatedProperties));
+    final GameState state = crowdedGame();
+    final GameRandom random = new GameRandom(7);
+
+    for (int i = 1; i < state.animals.size(); i++) {
+      final Animal animal = state.animals.get(i);
+      animal.changeOrientation(random.nextDouble() * 2d * Math.PI);
+      animal.changeSpeed(random.nextInt(20));
+      final Animal other = state.animals.get(i - 1);
+      for (int turn = -1; turn <= 1; turn++) {
+        // Truncating to whole pixels can move each coordinate one pixel
+        assertThat(rotatedService.getNextDistance(animal, other, turn))
+            .isCloseTo(gameBoardService.getNextDistance(animal, other, turn), within(2));
+      }
+    }
+  }
+
+  @Test
+  void farAnimalsMoveLessOftenWithMoreStepsAtOnce() {
+    properties.setSeed(42L);
+    properties.setBoardWidth(9600);
+    properties.setBoardHeight(5600);
+    properties.setLodDistance(0);
+    properties.setLodInterval(4);
+    final GameState state = startedGame();
+    gameBoardService.processKeys(state, ControlCode.PAUSE);
+
+    int nearMoves = 0;
+    int farMoves = 0;
+    for (int i = 0; i < 20; i++) {
+      final List<Animal> animals = List.copyOf(state.animals);
+      final int[] stepsBefore = animals.stream().mapToInt(Animal::getStepsAlive).toArray();
+      final boolean[] far = new boolean[animals.size()];
+      for (int j = 0; j < animals.size(); j++) {
+        final Animal animal = animals.get(j);
+        far[j] =
+            animal.getX() < state.viewPortX
+                || animal.getX() > state.viewPortX + GameBoardService.VIEW_PORT_WIDTH
+                || animal.getY() < state.viewPortY
+                || animal.getY() > state.viewPortY + GameBoardService.VIEW_PORT_HEIGHT;
+      }
+      gameBoardService.tick(state);
+
+      for (int j = 0; j < animals.size(); j++) {
+        final Animal animal = animals.get(j);
+        if (animal.isGold() || animal.getStepsAlive() == stepsBefore[j] && !animal.isAlive()) {
+          continue;
+        }
+        final int steps = animal.getStepsAlive() - stepsBefore[j];
+        if (!far[j]) {
+          assertThat(steps).isEqualTo(1);
+          nearMoves++;
+        } else if ((state.tick + animal.getNumber()) % 4 == 0) {
+          assertThat(steps).isEqualTo(4);
+          farMoves++;
+        } else {
+          assertThat(steps).isZero();
+        }
+      }
+    }
+    assertThat(nearMoves).isPositive();
+    assertThat(farMoves).isPositive();
+  }
+
+  @Test
+  void farAnimalHeadingForAnEdgeTurnsAwayInTime() {
+    properties.setBoardWidth(9600);
+    properties.setBoardHeight(5600);
+    properties.setLodDistance(0);
+    properties.setLodInterval(10);
+    final GameRandom random = new GameRandom(7);
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    state.random = random;
+    state.player = new Animal(1, AnimalType.PLAYER, 9600, 5600, random.split());
+    state.animals.add(state.player);
+    final Animal snake = new Animal(2, AnimalType.SNAKE, 9600, 5600, random.split());
+    state.animals.add(snake);
+    // Head east at speed 8, until 10 steps at once would leave the board
+    snake.changeSpeed(8 - (int) snake.getSpeed());
+    while (snake.getX() < 9600 - 150) {
+      snake.changeOrientation(Animal.EAST - snake.getOrientation());
+      snake.step();
+    }
+    snake.changeOrientation(Animal.EAST - snake.getOrientation());
+    assertThat(Math.abs(snake.getX() - state.player.getX()))
+        .isGreaterThan(2 * GameBoardService.VIEW_PORT_WIDTH);
+    state.resetBoard = false;
+    state.pause = false;
+
+    for (int i = 0; i < 30; i++) {
+      gameBoardService.tick(state);
+    }
+
+    assertThat(snake.isAlive()).isTrue();
+    assertThat(snake.getStepsAlive()).isGreaterThan(20);
+  }
+
+  @Test
+  void snakesSeekGoldFromAfar() {
+    final GameState state = board(3, AnimalType.SNAKE, AnimalType.GOLD);
+    final Animal snake = state.animals.get(1);
+    final GameState wandering = board(3, AnimalType.SNAKE, AnimalType.GOLD);
+    final Animal wanderingSnake = wandering.animals.get(1);
+
+    properties.setSeekDistance(5000);
+    assertThat(catchGold(state, snake)).isTrue();
+    properties.setSeekDistance(0);
+    assertThat(catchGold(wandering, wanderingSnake)).isFalse();
+  }
+
+  private boolean catchGold(final GameState state, final Animal snake) {
+    for (int i = 0; i < 500 && snake.isAlive(); i++) {
+      snake.step();
+      snake.safeGuardEdges();
+      gameBoardService.handleCollisions(state);
+      if (snake.getScore() > 0) return true;
+    }
+    return false;
+  }
+
+  @Test
+  void fastPoliceCatchesSnakeItPassesOnlyWhenSwept() {
+    final GameState state = board(5, AnimalType.POLICE, AnimalType.SNAKE);
+    final GameState grid = board(5, AnimalType.POLICE, AnimalType.SNAKE);
+
+    properties.setCollisionMode(CollisionMode.SWEEP);
+    assertThat(jumpOverSnake(state)).isFalse();
+    properties.setCollisionMode(CollisionMode.GRID);
+    assertThat(jumpOverSnake(grid)).isTrue();
+  }
+
+  /** Aim the police at the snake, and step so far at once that it lands beyond the snake. */
+  private boolean jumpOverSnake(final GameState state) {
+    final Animal police = state.animals.get(1);
+    final Animal snake = state.animals.get(2);
+    final double dx = snake.getX() - police.getX();
+    final double dy = snake.getY() - police.getY();
+    police.changeOrientation(Math.atan2(dy, dx) - police.getOrientation());
+    police.changeSpeed((int) Math.hypot(dx, dy) + 5 * snake.getSize() - (int) police.getSpeed());
+
+    state.sweepAndPrune.start(state.animals);
+    police.step();
+    assertThat(
+            Math.abs(police.getX() - snake.getX()) < police.getSize()
+                && Math.abs(police.getY() - snake.getY()) < police.getSize())
+        .isFalse();
+    gameBoardService.handleCollisions(state);
+    return snake.isAlive();
+  }
+
+  @Test
+  void ticksAreTimedByPhaseAndAnimalsCounted() {
+    final GameState state = startedGame();
+    gameBoardService.processKeys(state, ControlCode.PAUSE);
+    for (int i = 0; i < 10; i++) {
+      gameBoardService.tick(state);
+    }
+
+    for (final TickPhase phase : TickPhase.values()) {
+      // Animals only move while the game is not paused
+      final long ticks = phase.ordinal() <= TickPhase.SAFE_GUARD_EDGES.ordinal() ? 10 : state.tick;
+      assertThat(registry.get("game.tick.phase").tag("phase", phase.getTag()).timer().count())
+          .isEqualTo(ticks);
+    }
+    assertThat(registry.get("game.controls.received").counter().count()).isEqualTo(1);
+    assertThat(state.animalCounts.get(AnimalType.SNAKE.ordinal()))
+        .isEqualTo(
+            state.animals.stream().filter(a -> a.getAnimalType() == AnimalType.SNAKE).count());
+  }
+
+  @Test
+  void framesArePublishedEvenlyAtThePublishRate() {
+    properties.setTickRate(50);
+    properties.setPublishRate(15);
+    final GameState state = startedGame();
+    // The game stays paused, so no reset interrupts the ticks
+    final long firstTick = state.tick;
+    final long published = updates();
+    for (int i = 0; i < 100; i++) {
+      gameBoardService.tick(state);
+    }
+
+    assertThat(updates() - published).isEqualTo(30);
+    long previous = 0;
+    for (long tick = firstTick + 1; tick <= state.tick; tick++) {
+      if (!GameBoardService.isPublished(tick, 50, 15)) continue;
+      // 50 ticks over 15 frames: 3 or 4 ticks apart, never bunched up
+      if (previous > 0) assertThat(tick - previous).isBetween(3L, 4L);
+      previous = tick;
+    }
+    assertThat(GameBoardService.isPublished(state.tick, 20, 0)).isTrue();
+    assertThat(GameBoardService.isPublished(state.tick, 20, 60)).isTrue();
+  }
+
+  private long updates() {
+    final Timer timer =
+        registry.find("game.tick.phase").tag("phase", TickPhase.UPDATE_ANIMALS.getTag()).timer();
+    return timer == null ? 0 : timer.count();
+  }
+
+  private static void assertSameAnimals(final GameState expected, final GameState actual) {
+    assertThat(actual.animals).hasSameSizeAs(expected.animals);
+    for (int i = 0; i < expected.animals.size(); i++) {
+      assertThat(actual.animals.get(i))
+          .usingRecursiveComparison()
+          .isEqualTo(expected.animals.get(i));
+    }
+  }
+
+  private WebSocketService webSocketService(final GameStateRepository repository) {
+    return new WebSocketService(
+        new OutboundPublisher(
+            new SimpMessagingTemplate((message, timeout) -> true),
+            properties,
+            metrics,
+            Runnable::run),
+        repository,
+        properties,
+        new RawSocketService(properties, metrics));
+  }
+
+  private GameBoardService allocationService(final WebSocketService webSocketService) {
+    properties.setSeed(42L);
+    return new GameBoardService(
+        webSocketService,
+        properties,
+        ForkJoinPool.commonPool(),
+        metrics,
+        new EventJournal(properties));
+  }
+
+  /**
+   * Median of the bytes allocated by all threads in a tick, after the game has settled. Ticks in
+   * which animals die, or the board is reset, allocate news messages and new animals.
+   */
+  private static long allocatedPerTick(final GameBoardService service, final GameState state) {
+    service.processKeys(state, ControlCode.PAUSE);
+    for (int i = 0; i < 2000; i++) {
+      service.tick(state);
+    }
+    final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long[] allocated = new long[500];
+    final long[] measuring = new long[allocated.length];
+    for (int i = 0; i < allocated.length; i++) {
+      final long before = allocatedBytes(threads);
+      service.tick(state);
+      allocated[i] = allocatedBytes(threads) - before;
+      final long measured = allocatedBytes(threads);
+      measuring[i] = allocatedBytes(threads) - measured;
+    }
+    Arrays.sort(allocated);
+    Arrays.sort(measuring);
+    // Reading the counters of all threads allocates as well
+    return allocated[allocated.length / 2] - measuring[measuring.length / 2];
+  }
+
+  private static long allocatedBytes(final ThreadMXBean threads) {
+    long bytes = 0;
+    for (final long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      bytes += Math.max(0, allocated);
+    }
+    return bytes;
+  }
+
+  private static SessionSubscribeEvent subscribe(final String session, final String destination) {
+    final StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+    headers.setSessionId(session);
+    headers.setSubscriptionId("sub-0");
+    headers.setDestination(destination);
+    return new SessionSubscribeEvent(
+        GameBoardServiceTest.class,
+        MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+  }
+
+  private static GameState playedGame(final GameBoardService service, final int ticks) {
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    service.processKeys(state, ControlCode.PAUSE);
+    for (int i = 0; i < ticks; i++) {
+      service.tick(state);
+    }
+    return state;
+  }
+
+  private static GameState crowdedGame() {
+    final GameRandom random = new GameRandom(42);
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    state.player = new Animal(1, AnimalType.PLAYER, 2400, 1400, random.split());
+    state.animals.add(state.player);
+    final AnimalType[] types = {AnimalType.SNAKE, AnimalType.POLICE, AnimalType.GOLD};
+    for (int i = 2; i < 2500; i++) {
+      state.animals.add(new Animal(i, types[i % 3], 2400, 1400, random.split()));
+    }
+    return state;
+  }
+
+  /** Board of the player and animals of the given types, the same each time for a seed. */
+  private static GameState board(final long seed, final AnimalType... types) {
+    final GameRandom random = new GameRandom(seed);
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    state.player = new Animal(1, AnimalType.PLAYER, 2400, 1400, random.split());
+    state.animals.add(state.player);
+    for (int i = 0; i < types.length; i++) {
+      state.animals.add(new Animal(i + 2, types[i], 2400, 1400, random.split()));
+    }
+    return state;
+  }
+
+  /** Tick a new game until its board is set up. */
+  private GameState startedGame() {
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    while (state.player == null) {
+      gameBoardService.tick(state);
+    }
+    return state;
+  }
+}
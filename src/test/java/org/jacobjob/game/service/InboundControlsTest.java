@@ -0,0 +1,70 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameState;
+import org.junit.jupiter.api.Test;
+
+class InboundControlsTest {
+
+  private final GameProperties properties = new GameProperties();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final GameMetrics metrics = new GameMetrics(registry);
+  private final InboundControls inboundControls =
+      new InboundControls(
+          new GameBoardService(
+              mock(WebSocketService.class),
+              properties,
+              ForkJoinPool.commonPool(),
+              metrics,
+              new EventJournal(properties)),
+          properties,
+          metrics);
+  private final GameState state = new GameState(GameState.DEFAULT_ROOM);
+
+  @Test
+  void unknownControlCodesNeverReachTheGame() {
+    assertThat(inboundControls.receive(new ConcurrentHashMap<>(), state, "jump")).isFalse();
+    assertThat(inboundControls.receive(new ConcurrentHashMap<>(), state, "")).isFalse();
+
+    assertThat(state.controls.isEmpty()).isTrue();
+    assertThat(dropped("unknown")).isEqualTo(2);
+    assertThat(registry.get("game.controls.received").counter().count()).isZero();
+  }
+
+  @Test
+  void floodingSessionIsLimitedWithoutLimitingOthers() {
+    properties.setControlRate(1);
+    properties.setControlBurst(5);
+    final Map<String, Object> flooding = new ConcurrentHashMap<>();
+    final Map<String, Object> other = new ConcurrentHashMap<>();
+
+    for (int i = 0; i < 100; i++) inboundControls.receive(flooding, state, "up");
+    assertThat(inboundControls.receive(other, state, "left")).isTrue();
+
+    final List<ControlCode> received = new ArrayList<>();
+    state.controls.drain(received::add);
+    assertThat(received)
+        .containsExactly(
+            ControlCode.LEFT,
+            ControlCode.UP,
+            ControlCode.UP,
+            ControlCode.UP,
+            ControlCode.UP,
+            ControlCode.UP);
+    assertThat(dropped("rate-limited")).isEqualTo(95);
+  }
+
+  private double dropped(final String reason) {
+    return registry.get("game.controls.dropped").tag("reason", reason).counter().count();
+  }
+}
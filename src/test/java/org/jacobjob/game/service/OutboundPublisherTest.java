@@ -0,0 +1,205 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.AnimalDTO;
+import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.FrameDTO;
+import org.jacobjob.game.model.FrameTracker;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.OverflowPolicy;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class OutboundPublisherTest {
+
+  private final List<Object> sent = new ArrayList<>();
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final GameProperties properties = new GameProperties();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final GameMetrics metrics = new GameMetrics(registry);
+  private final OutboundPublisher publisher =
+      new OutboundPublisher(
+          new SimpMessagingTemplate(
+              (final Message<?> message, final long timeout) -> sent.add(message.getPayload())),
+          properties,
+          metrics,
+          tasks::add);
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) task.run();
+  }
+
+  @Test
+  void messagesToADestinationKeepTheirOrder() {
+    for (int i = 0; i < 10; i++) {
+      publisher.send(WebSocketTopic.SCORE, GameState.DEFAULT_ROOM, "score " + i);
+    }
+    assertThat(tasks).hasSize(1);
+    runTasks();
+
+    assertThat(sent).hasSize(10);
+    assertThat(sent.getFirst()).isEqualTo("score 0");
+    assertThat(sent.getLast()).isEqualTo("score 9");
+    assertThat(publisher.getActiveDestinations()).isZero();
+    assertThat(registry.get("game.messages.sent").tag("topic", "score").counter().count())
+        .isEqualTo(10);
+  }
+
+  @Test
+  void destinationKeepsItsQueueAndDrainTask() {
+    publisher.send(WebSocketTopic.FRAME, GameState.DEFAULT_ROOM, "frame 1");
+    final Runnable drain = tasks.peek();
+    runTasks();
+    publisher.send(WebSocketTopic.FRAME, GameState.DEFAULT_ROOM, "frame 2");
+    publisher.send(WebSocketTopic.FRAME, GameState.DEFAULT_ROOM, "frame 3");
+
+    assertThat(tasks).containsExactly(drain);
+    runTasks();
+    assertThat(sent).containsExactly("frame 1", "frame 2", "frame 3");
+  }
+
+  @Test
+  void steadyFramesAreQueuedWithoutAllocating() {
+    final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final FrameTracker room = new FrameTracker();
+    final FrameTracker client = new FrameTracker();
+    final Object frame = "frame";
+    final long[] allocated = new long[500];
+    final long[] measuring = new long[allocated.length];
+    for (int round = -2000; round < allocated.length; round++) {
+      final long before = threads.getCurrentThreadAllocatedBytes();
+      for (int i = 0; i < 10; i++) {
+        publisher.send(WebSocketTopic.FRAME, GameState.DEFAULT_ROOM, frame, room.keyframeRequest());
+        publisher.sendToSession(
+            "player",
+            WebSocketTopic.FRAME_BINARY,
+            GameState.DEFAULT_ROOM,
+            frame,
+            client.keyframeRequest());
+      }
+      final long queued = threads.getCurrentThreadAllocatedBytes();
+      final long measured = threads.getCurrentThreadAllocatedBytes();
+      if (round >= 0) {
+        allocated[round] = queued - before;
+        measuring[round] = measured - queued;
+      }
+      // Sending converts the frames into messages, which is left out of the measurement
+      runTasks();
+      sent.clear();
+    }
+    Arrays.sort(allocated);
+    Arrays.sort(measuring);
+
+    assertThat(allocated[allocated.length / 2] - measuring[measuring.length / 2]).isZero();
+  }
+
+  @Test
+  void unsubscribedAndClosedDestinationsGetNoMoreMessages() {
+    publisher.sendToSession("player", WebSocketTopic.FRAME, "room", "frame 1", () -> {});
+    publisher.sendToSession("spectator", WebSocketTopic.FRAME, "room", "frame 1", () -> {});
+    publisher.send(WebSocketTopic.NEWS, "room", "news 1");
+    publisher.unsubscribe("player", WebSocketTopic.FRAME, "room");
+    publisher.sendToSession("player", WebSocketTopic.FRAME, "other", "frame 1", () -> {});
+    publisher.closeRoom("other");
+    runTasks();
+
+    // Only the spectator's frame and the news were still wanted
+    assertThat(sent).containsExactly("frame 1", "news 1");
+    assertThat(publisher.getQueueDepth()).isZero();
+  }
+
+  @Test
+  void fullQueueDropsOldestMessages() {
+    properties.setOutboundQueueSize(4);
+    final AtomicInteger drops = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      publisher.send(
+          WebSocketTopic.NEWS, GameState.DEFAULT_ROOM, "news " + i, drops::incrementAndGet);
+    }
+    assertThat(publisher.getQueueDepth()).isEqualTo(4);
+    runTasks();
+
+    assertThat(sent).hasSize(4);
+    assertThat(sent.getFirst()).isEqualTo("news 6");
+    assertThat(publisher.getDropped()).isEqualTo(6);
+    assertThat(drops).hasValue(6);
+  }
+
+  @Test
+  void coalesceSendsOnlyTheLatestMessage() {
+    properties.setOutboundQueueSize(1);
+    properties.setOutboundOverflow(OverflowPolicy.COALESCE);
+    for (int i = 0; i < 10; i++) {
+      publisher.send(WebSocketTopic.SCORE, GameState.DEFAULT_ROOM, "score " + i);
+      publisher.send(WebSocketTopic.NEWS, GameState.DEFAULT_ROOM, "news " + i);
+    }
+    runTasks();
+
+    assertThat(sent).hasSize(2);
+    assertThat(sent.getFirst()).isEqualTo("score 9");
+    assertThat(sent.getLast()).isEqualTo("news 9");
+  }
+
+  @Test
+  void clientOfAFullFrameQueueNeverAppliesAFrameOnTopOfADroppedOne() {
+    properties.setOutboundQueueSize(3);
+    final FrameTracker tracker = new FrameTracker();
+    final Map<Long, Map<Integer, AnimalDTO>> visibleByTick = new HashMap<>();
+    for (long tick = 1; tick <= 200; tick++) {
+      // Each animal moves only now and then, so each change is sent in one frame only
+      final List<AnimalDTO> visible = new ArrayList<>();
+      for (int number = 1; number <= 20; number++) {
+        if ((tick + number) % 31 == 0) continue;
+        final int x = (int) (tick / (number + 1)) * 5;
+        visible.add(new AnimalDTO(x, number * 10, 8, number, AnimalType.SNAKE, true));
+      }
+      visibleByTick.put(tick, toMap(visible));
+      final FrameDTO frame = tracker.nextFrame(visible, tick, 0, 0, 40);
+      if (frame != null) {
+        publisher.send(
+            WebSocketTopic.FRAME, GameState.DEFAULT_ROOM, frame, tracker::requestKeyframe);
+      }
+      // The client only keeps up every fifth tick
+      if (tick % 5 == 0) runTasks();
+    }
+    runTasks();
+
+    assertThat(publisher.getDropped()).isPositive();
+    final Map<Integer, AnimalDTO> client = new HashMap<>();
+    int keyframes = 0;
+    for (final Object message : sent) {
+      final FrameDTO frame = (FrameDTO) message;
+      if (frame.isKeyframe()) {
+        client.clear();
+        keyframes++;
+      }
+      assertThat(keyframes).isPositive();
+      frame.getAnimals().forEach(animal -> client.put(animal.getNumber(), animal));
+      frame.getRemoved().forEach(client::remove);
+      assertThat(client).isEqualTo(visibleByTick.get(frame.getTick()));
+    }
+    assertThat(keyframes).isLessThan(sent.size());
+  }
+
+  private static Map<Integer, AnimalDTO> toMap(final List<AnimalDTO> animals) {
+    final Map<Integer, AnimalDTO> map = new HashMap<>();
+    animals.forEach(animal -> map.put(animal.getNumber(), animal));
+    return map;
+  }
+}
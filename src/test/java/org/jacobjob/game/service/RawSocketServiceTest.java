@@ -0,0 +1,83 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.Animal;
+import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.BinaryFrameCodec;
+import org.jacobjob.game.model.FrameDTO;
+import org.jacobjob.game.model.GameRandom;
+import org.jacobjob.game.model.GameState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class RawSocketServiceTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final RawSocketService rawSocketService =
+      new RawSocketService(new GameProperties(), new GameMetrics(registry));
+
+  @AfterEach
+  void stopSending() {
+    rawSocketService.stop();
+  }
+
+  @Test
+  void slowClientGetsLatestFrameInsteadOfAQueue() throws Exception {
+    final List<FrameDTO> received = new CopyOnWriteArrayList<>();
+    final CountDownLatch sending = new CountDownLatch(1);
+    final CountDownLatch sent = new CountDownLatch(2);
+    final CountDownLatch slowNetwork = new CountDownLatch(1);
+    final WebSocketSession session = mock(WebSocketSession.class);
+    when(session.getId()).thenReturn("slow");
+    when(session.isOpen()).thenReturn(true);
+    doAnswer(
+            invocation -> {
+              final BinaryMessage message = invocation.getArgument(0);
+              received.add(BinaryFrameCodec.decode(message.getPayload().array()));
+              sending.countDown();
+              slowNetwork.await();
+              sent.countDown();
+              return null;
+            })
+        .when(session)
+        .sendMessage(any());
+    final GameState state = new GameState(GameState.DEFAULT_ROOM);
+    final GameRandom random = new GameRandom(42);
+    for (int i = 1; i <= 50; i++) {
+      state.animals.add(new Animal(i, AnimalType.SNAKE, 1200, 700, random.split()));
+    }
+    rawSocketService.open(session, state.roomId);
+
+    rawSocketService.publish(state);
+    assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+    // While the first frame is on its way, the next frames replace each other
+    for (int i = 0; i < 10; i++) {
+      state.animals.forEach(Animal::step);
+      state.tick++;
+      rawSocketService.publish(state);
+    }
+    assertThat(rawSocketService.getCoalescedFrames()).isEqualTo(9);
+    slowNetwork.countDown();
+
+    assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(received).hasSize(2);
+    assertThat(received.get(1).isKeyframe()).isTrue();
+    assertThat(registry.get("game.messages.sent").tag("topic", "native-frame").counter().count())
+        .isEqualTo(2);
+    assertThat(registry.get("game.messages.bytes").tag("topic", "native-frame").counter().count())
+        .isPositive();
+  }
+}
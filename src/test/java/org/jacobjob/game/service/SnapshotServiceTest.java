@@ -0,0 +1,168 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.CollisionMode;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+class SnapshotServiceTest {
+
+  @TempDir private Path directory;
+
+  private final GameProperties properties = new GameProperties();
+  private final GameBoardService gameBoardService =
+      new GameBoardService(
+          mock(WebSocketService.class),
+          properties,
+          ForkJoinPool.commonPool(),
+          new GameMetrics(new SimpleMeterRegistry()),
+          new EventJournal(properties));
+
+  @Test
+  void restoredRoomsPlayOnLikeTheOriginals() throws Exception {
+    properties.setSeed(42L);
+    properties.setSnapshotFile(directory.resolve("game.snapshot").toString());
+    final GameStateRepository original = new GameStateRepository(properties);
+    final GameState state = original.getState();
+    state.controls.offer(ControlCode.PAUSE);
+    for (int i = 0; i < 500; i++) {
+      gameBoardService.tick(state);
+    }
+    final SnapshotService snapshotService = snapshotService(original);
+    snapshotService.write(snapshotService.capture());
+
+    final GameStateRepository restarted = new GameStateRepository(properties);
+    assertThat(snapshotService(restarted).restore()).isEqualTo(1);
+    final GameState restored = restarted.getState();
+    assertThat(restored.tick).isEqualTo(state.tick);
+    assertThat(restored.animals).hasSameSizeAs(state.animals);
+
+    for (int i = 0; i < 500; i++) {
+      gameBoardService.tick(state);
+      gameBoardService.tick(restored);
+    }
+    assertThat(restored.seed).isEqualTo(state.seed);
+    assertThat(restored.animals).hasSameSizeAs(state.animals);
+    for (int i = 0; i < state.animals.size(); i++) {
+      // Directions are cached on first use, so they can differ until the next step
+      assertThat(restored.animals.get(i))
+          .usingRecursiveComparison()
+          .ignoringFields("directionX", "directionY", "directionOf")
+          .isEqualTo(state.animals.get(i));
+    }
+  }
+
+  @Test
+  void restoredRoomsPlayOnLikeTheOriginalsWhenSweepingCollisions() throws Exception {
+    properties.setSeed(7L);
+    properties.setCollisionMode(CollisionMode.SWEEP);
+    // Crowded, so that the x ranges of animals often start at the same place
+    properties.setAmountOfSnakes(400);
+    properties.setBoardWidth(600);
+    properties.setBoardHeight(400);
+    properties.setSnapshotFile(directory.resolve("game.snapshot").toString());
+    final GameStateRepository original = new GameStateRepository(properties);
+    final GameState state = original.getState();
+    for (int i = 0; i < 100; i++) {
+      gameBoardService.tick(state);
+    }
+    final SnapshotService snapshotService = snapshotService(original);
+    snapshotService.write(snapshotService.capture());
+
+    final GameStateRepository restarted = new GameStateRepository(properties);
+    assertThat(snapshotService(restarted).restore()).isEqualTo(1);
+    final GameState restored = restarted.getState();
+    for (int i = 0; i < 100; i++) {
+      gameBoardService.tick(state);
+      gameBoardService.tick(restored);
+      assertThat(restored.checksum()).as("tick %d", restored.tick).isEqualTo(state.checksum());
+    }
+  }
+
+  @Test
+  void restoredRoomsNobodyJoinsAreClosed() throws Exception {
+    properties.setSnapshotFile(directory.resolve("game.snapshot").toString());
+    final GameStateRepository original = new GameStateRepository(properties);
+    for (final String roomId : List.of("abandoned", "joined")) {
+      final GameState room = original.findOrCreate(roomId).orElseThrow();
+      while (room.player == null) {
+        gameBoardService.tick(room);
+      }
+    }
+    snapshotService(original).write(snapshotService(original).capture());
+
+    final GameStateRepository restarted = new GameStateRepository(properties);
+    final WebSocketService webSocketService = webSocketService(restarted);
+    final SnapshotService snapshotService =
+        new SnapshotService(restarted, properties, webSocketService);
+    final long restoredAt = System.nanoTime();
+    assertThat(snapshotService.restore()).isEqualTo(2);
+    webSocketService.onSubscribe(subscribe("/topic/rooms/joined/frame"));
+
+    snapshotService.closeAbandonedRooms(restoredAt);
+    assertThat(restarted.find("abandoned")).isPresent();
+    snapshotService.closeAbandonedRooms(
+        System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getRestoredRoomGrace()));
+    assertThat(restarted.find("abandoned")).isEmpty();
+    assertThat(restarted.find("joined")).isPresent();
+    assertThat(restarted.getState()).isNotNull();
+  }
+
+  @Test
+  void roomsOfAnotherBoardSizeAreNotRestored() throws Exception {
+    properties.setSnapshotFile(directory.resolve("game.snapshot").toString());
+    final GameStateRepository original = new GameStateRepository(properties);
+    while (original.getState().player == null) {
+      gameBoardService.tick(original.getState());
+    }
+    final SnapshotService snapshotService = snapshotService(original);
+    snapshotService.write(snapshotService.capture());
+
+    properties.setBoardWidth(properties.getBoardWidth() * 2);
+    final GameStateRepository restarted = new GameStateRepository(properties);
+    assertThat(snapshotService(restarted).restore()).isZero();
+    assertThat(restarted.getState().player).isNull();
+  }
+
+  private SnapshotService snapshotService(final GameStateRepository repository) {
+    return new SnapshotService(repository, properties, webSocketService(repository));
+  }
+
+  private WebSocketService webSocketService(final GameStateRepository repository) {
+    return new WebSocketService(
+        new OutboundPublisher(
+            new SimpMessagingTemplate((message, timeout) -> true),
+            properties,
+            new GameMetrics(new SimpleMeterRegistry()),
+            Runnable::run),
+        repository,
+        properties,
+        new RawSocketService(properties, new GameMetrics(new SimpleMeterRegistry())));
+  }
+
+  private static SessionSubscribeEvent subscribe(final String destination) {
+    final StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+    headers.setSessionId("player");
+    headers.setSubscriptionId("sub-0");
+    headers.setDestination(destination);
+    return new SessionSubscribeEvent(
+        SnapshotServiceTest.class,
+        MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+  }
+}
@@ -0,0 +1,230 @@
+package org.jacobjob.game.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.Animal;
+import org.jacobjob.game.model.AnimalDTO;
+import org.jacobjob.game.model.AnimalType;
+import org.jacobjob.game.model.ClientView;
+import org.jacobjob.game.model.FrameDTO;
+import org.jacobjob.game.model.GameRandom;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.model.WebSocketTopic;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+class WebSocketServiceTest {
+
+  private final GameProperties properties = new GameProperties();
+  private final GameMetrics metrics = new GameMetrics(new SimpleMeterRegistry());
+  private final GameStateRepository gameStateRepository = new GameStateRepository(properties);
+  private final List<Message<?>> sent = new ArrayList<>();
+  private final WebSocketService webSocketService =
+      webSocketService(new RawSocketService(properties, metrics));
+
+  private WebSocketService webSocketService(final RawSocketService rawSocketService) {
+    return new WebSocketService(
+        new OutboundPublisher(
+            new SimpMessagingTemplate((message, timeout) -> sent.add(message)),
+            properties,
+            metrics,
+            Runnable::run),
+        gameStateRepository,
+        properties,
+        rawSocketService);
+  }
+
+  @Test
+  void clientsOnlyReceiveAnimalsInTheirOwnViewport() {
+    final GameState state = gameStateRepository.getState();
+    final GameRandom random = new GameRandom(42);
+    for (int i = 1; i <= 500; i++) {
+      state.animals.add(new Animal(i, AnimalType.SNAKE, 2400, 1400, random.split()));
+    }
+    webSocketService.onSubscribe(subscribe("player", "/user/queue/frame"));
+    webSocketService.onSubscribe(subscribe("spectator", "/user/queue/frame"));
+    webSocketService.lookAt("spectator", 1200, 700);
+
+    webSocketService.updateAnimals(state);
+
+    final FrameDTO playerFrame = frameOf("player");
+    final FrameDTO spectatorFrame = frameOf("spectator");
+    assertThat(playerFrame.isKeyframe()).isTrue();
+    assertThat(playerFrame.getAnimals())
+        .isNotEmpty()
+        .hasSizeLessThan(state.animals.size())
+        .allMatch(animal -> isInView(animal, 0, 0));
+    assertThat(spectatorFrame.getViewPortX()).isEqualTo(1200);
+    assertThat(spectatorFrame.getAnimals())
+        .isNotEmpty()
+        .allMatch(animal -> isInView(animal, 1200, 700))
+        .isNotEqualTo(playerFrame.getAnimals());
+    // Nobody subscribed to the frames shared by the room
+    assertThat(sent).hasSize(2);
+  }
+
+  @Test
+  void clientViewsFindTheSameAnimalsAsAFullScan() {
+    final GameState state = gameStateRepository.getState();
+    final GameRandom random = new GameRandom(7);
+    for (int i = 1; i <= 2000; i++) {
+      state.animals.add(new Animal(i, AnimalType.SNAKE, 2400, 1400, random.split()));
+    }
+    final ClientView view = new ClientView("spectator", state.roomId, WebSocketTopic.FRAME);
+
+    for (int tick = 0; tick < 50; tick++) {
+      state.tick++;
+      state.animals.forEach(Animal::step);
+      state.animals.get(tick * 13).kill();
+      view.lookAt(tick * 30, tick * 15);
+      view.getFrameTracker().requestKeyframe();
+
+      final List<Integer> scanned = new ArrayList<>();
+      for (final Animal animal : state.animals) {
+        if (animal.isAlive() && isInView(new AnimalDTO(animal), tick * 30, tick * 15)) {
+          scanned.add(animal.getNumber());
+        }
+      }
+      assertThat(webSocketService.nextFrame(view, state).getAnimals())
+          .extracting(AnimalDTO::getNumber)
+          .isNotEmpty()
+          .containsExactlyElementsOf(scanned);
+    }
+  }
+
+  @Test
+  void clientSubscribingWhileItsRoomClosesStaysInTheRoom() throws InterruptedException {
+    final WebSocketService service =
+        joinWhileClosing(
+            "arena",
+            (joining, raw) -> joining.onSubscribe(subscribe("player", "/topic/rooms/arena/frame")));
+
+    service.updateAnimals(gameStateRepository.find("arena").orElseThrow());
+    assertThat(sent)
+        .extracting(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+        .containsExactly("/topic/rooms/arena/frame");
+  }
+
+  @Test
+  void clientViewSubscribingWhileItsRoomClosesStaysInTheRoom() throws InterruptedException {
+    final WebSocketService service =
+        joinWhileClosing(
+            "arena",
+            (joining, raw) ->
+                joining.onSubscribe(subscribe("player", "/user/queue/rooms/arena/frame")));
+
+    service.updateAnimals(gameStateRepository.find("arena").orElseThrow());
+    assertThat(sent)
+        .extracting(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+        .containsExactly("/user/player/queue/rooms/arena/frame");
+  }
+
+  @Test
+  void nativeClientConnectingWhileItsRoomClosesStaysInTheRoom() throws InterruptedException {
+    final WebSocketSession session = mock(WebSocketSession.class);
+    when(session.getId()).thenReturn("native");
+    when(session.getUri()).thenReturn(URI.create("ws://localhost/frames?room=arena"));
+    when(session.getAttributes()).thenReturn(new HashMap<>());
+    final List<RawSocketService> opened = new ArrayList<>();
+
+    joinWhileClosing(
+        "arena",
+        (joining, raw) -> {
+          opened.add(raw);
+          try {
+            new RawSocketHandler(raw, joining, mock(InboundControls.class), gameStateRepository)
+                .afterConnectionEstablished(session);
+          } catch (final Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+
+    assertThat(gameStateRepository.find("arena")).isPresent();
+    assertThat(opened.getFirst().viewOf(session, "arena")).isNotNull();
+    opened.getFirst().stop();
+  }
+
+  /**
+   * Let a client join a room while the room is found empty and about to close. The room closes
+   * once the client waits for it, or has already joined.
+   */
+  private WebSocketService joinWhileClosing(
+      final String roomId, final BiConsumer<WebSocketService, RawSocketService> join)
+      throws InterruptedException {
+    final CountDownLatch checking = new CountDownLatch(1);
+    final CountDownLatch closing = new CountDownLatch(1);
+    // Native clients are left out of the check, which waits while the client joins
+    final RawSocketService rawSocketService =
+        new RawSocketService(properties, metrics) {
+          @Override
+          public boolean hasClients(final String room) {
+            checking.countDown();
+            try {
+              closing.await();
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return false;
+          }
+        };
+    final WebSocketService service = webSocketService(rawSocketService);
+    assertThat(gameStateRepository.findOrCreate(roomId)).isPresent();
+
+    final Thread closer = Thread.ofPlatform().start(() -> service.closeRoomIfEmpty(roomId));
+    checking.await();
+    final Thread client = Thread.ofPlatform().start(() -> join.accept(service, rawSocketService));
+    while (client.isAlive() && client.getState() != Thread.State.BLOCKED) {
+      Thread.onSpinWait();
+    }
+    closing.countDown();
+    closer.join();
+    client.join();
+    return service;
+  }
+
+  private boolean isInView(final AnimalDTO animal, final int viewPortX, final int viewPortY) {
+    final int margin = properties.getViewMargin();
+    return animal.getX() >= viewPortX - margin
+        && animal.getX() <= viewPortX + GameBoardService.VIEW_PORT_WIDTH + margin
+        && animal.getY() >= viewPortY - margin
+        && animal.getY() <= viewPortY + GameBoardService.VIEW_PORT_HEIGHT + margin;
+  }
+
+  private FrameDTO frameOf(final String session) {
+    return sent.stream()
+        .filter(
+            message ->
+                ("/user/" + session + "/queue/frame")
+                    .equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+        .map(message -> (FrameDTO) message.getPayload())
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private SessionSubscribeEvent subscribe(final String session, final String destination) {
+    final StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+    headers.setSessionId(session);
+    headers.setSubscriptionId("sub-0");
+    headers.setDestination(destination);
+    return new SessionSubscribeEvent(
+        this, MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+  }
+}
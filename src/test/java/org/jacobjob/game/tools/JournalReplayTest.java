@@ -0,0 +1,97 @@
+package org.jacobjob.game.tools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.jacobjob.game.config.GameProperties;
+import org.jacobjob.game.model.ControlCode;
+import org.jacobjob.game.model.GameState;
+import org.jacobjob.game.repository.GameStateRepository;
+import org.jacobjob.game.service.EventJournal;
+import org.jacobjob.game.service.GameBoardService;
+import org.jacobjob.game.service.GameMetrics;
+import org.jacobjob.game.service.WebSocketService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalReplayTest {
+
+  @TempDir private Path directory;
+
+  private final GameProperties replayProperties = new GameProperties();
+  private GameState original;
+
+  @BeforeEach
+  void playJournaledGame() {
+    final GameProperties properties = new GameProperties();
+    properties.setJournalDirectory(directory.toString());
+    properties.setAmountOfSnakes(20);
+    final EventJournal journal = new EventJournal(properties);
+    final GameBoardService gameBoardService = gameBoardService(properties, journal);
+    original = new GameStateRepository(properties).getState();
+    original.controls.offer(ControlCode.PAUSE);
+    final List<ControlCode> controls =
+        List.of(
+            ControlCode.LEFT,
+            ControlCode.LEFT,
+            ControlCode.RIGHT,
+            ControlCode.UP,
+            ControlCode.DOWN);
+    for (int i = 0; i < 1_000; i++) {
+      if (i % 7 == 0) original.controls.offer(controls.get(i / 7 % controls.size()));
+      gameBoardService.tick(original);
+    }
+    journal.stop();
+  }
+
+  @Test
+  void replayIsTheSameAsTheOriginalGame() throws Exception {
+    final JournalReplay replay = new JournalReplay(replayProperties, replayService());
+    for (final Path segment : EventJournal.segments(directory)) {
+      ReplayRunner.replay(segment, replay);
+    }
+
+    assertThat(replay.getTicks()).isEqualTo(1_000);
+    assertThat(replay.getMismatches()).isZero();
+    assertThat(replay.getDivergences()).isEmpty();
+    final GameState replayed = replay.state(original.roomId);
+    assertThat(replayed.seed).isEqualTo(original.seed);
+    assertThat(replayed.checksum()).isEqualTo(original.checksum());
+  }
+
+  @Test
+  void replayWithOtherControlsDiverges() throws Exception {
+    final JournalReplay replay =
+        new JournalReplay(replayProperties, replayService()) {
+          @Override
+          public void control(final String roomId, final String controlCode) {
+            super.control(roomId, "left".equals(controlCode) ? "right" : controlCode);
+          }
+        };
+    for (final Path segment : EventJournal.segments(directory)) {
+      ReplayRunner.replay(segment, replay);
+    }
+
+    assertThat(replay.getMismatches()).isPositive();
+    assertThat(replay.getDivergences()).hasSize(1);
+  }
+
+  private GameBoardService replayService() {
+    return gameBoardService(replayProperties, new EventJournal(replayProperties));
+  }
+
+  private static GameBoardService gameBoardService(
+      final GameProperties properties, final EventJournal journal) {
+    return new GameBoardService(
+        mock(WebSocketService.class),
+        properties,
+        ForkJoinPool.commonPool(),
+        new GameMetrics(new SimpleMeterRegistry()),
+        journal);
+  }
+}
@@ -6,6 +6,22 @@ ctx.font = "8px Arial";
 var socket = null;
 var stompClient = null;
 var connected = false;
+var frameAnimals = null; // animals of the last frame, by number
+// Frames are not sent every tick: the animals are drawn a little in the past, in between the two
+// frames received around that moment, so they move smoothly at any publish rate
+var frames = []; // the animals of the frames received, with their tick, oldest first
+var clock = null; // estimated server tick at a local time
+var msPerTick = 50; // estimated from the frames received
+var ticksPerFrame = 1; // estimated from the frames received
+const FRAMES_BEHIND = 2; // frames the drawing stays behind, to have a next frame to move to
+// Open the game with ?format=binary to receive compact binary frames instead of JSON
+var binaryFrames = new URLSearchParams(window.location.search).get("format") === "binary";
+// Open the game with ?room=name to play in a room of your own
+var room = new URLSearchParams(window.location.search).get("room");
+// Open the game with ?view=x,y to watch that part of the board instead of following the player
+var view = new URLSearchParams(window.location.search).get("view");
+// Same order as the AnimalType enum on the server
+const ANIMAL_TYPES = ["SNAKE", "GOLD", "PLAYER", "POLICE"];
 
 function connect() {
   showMessage("Connecting...");
@@ -14,16 +30,29 @@ function connect() {
   stompClient.connect({}, function (frame) {
     showMessage("Connected!");
     connected = true;
-    stompClient.subscribe("/topic/snakes", function (message) {
+    stompClient.subscribe(topic("snakes"), function (message) {
       drawSnake(message.body);
     });
-    stompClient.subscribe("/topic/police", function (message) {
+    stompClient.subscribe(topic("police"), function (message) {
       drawSnake(message.body);
     });
-    stompClient.subscribe("/topic/news", function (message) {
+    // Frames of our own viewport arrive in a queue of this client
+    if (binaryFrames) {
+      stompClient.subscribe(clientQueue("frame.binary"), function (message) {
+        drawFrame(decodeBinaryFrame(message.body));
+      });
+    } else {
+      stompClient.subscribe(clientQueue("frame"), function (message) {
+        drawFrame(JSON.parse(message.body));
+      });
+    }
+    if (view) {
+      stompClient.send("/inbound/viewport", view);
+    }
+    stompClient.subscribe(topic("news"), function (message) {
       showMessage(message.body);
     });
-    stompClient.subscribe("/topic/score", function (message) {
+    stompClient.subscribe(topic("score"), function (message) {
       showScore(message.body);
     });
     showMessage("Press spacebar to start!");
@@ -31,6 +60,9 @@ function connect() {
 
   socket.onclose = function(e) {
     socket = null;
+    frameAnimals = null; // wait for the next keyframe after reconnecting
+    frames = [];
+    clock = null;
     stompClient = null;
     if (connected) showMessage("Connection closed.");
     connected = false;
@@ -39,25 +71,37 @@ function connect() {
  
 }
 
+function topic(name) {
+  return room ? "/topic/rooms/" + room + "/" + name : "/topic/" + name;
+}
+
+function clientQueue(name) {
+  return room ? "/user/queue/rooms/" + room + "/" + name : "/user/queue/" + name;
+}
+
+function sendControl(controlCode) {
+  stompClient.send(room ? "/inbound/controls/" + room : "/inbound/controls", controlCode);
+}
+
 document.onkeydown = function(e) {
   switch (e.keyCode) {
       case 37: //Left
-        stompClient.send("/inbound/controls", "left");
+        sendControl("left");
         break;
       case 38: //Up
-        stompClient.send("/inbound/controls", "up");
+        sendControl("up");
         break;
       case 39: //Right
-        stompClient.send("/inbound/controls", "right");
+        sendControl("right");
         break;
       case 40: //Down
-        stompClient.send("/inbound/controls", "down");
+        sendControl("down");
         break;
       case 82: // 'r'
-        stompClient.send("/inbound/controls", "reset");
+        sendControl("reset");
         break;
       case 32: // whitespace
-        stompClient.send("/inbound/controls", "pause");
+        sendControl("pause");
         break;
   }
   // https://keycode.info/
@@ -71,22 +115,143 @@ function drawSnake(message) {
     ctx.clearRect(oldAnimal.x, oldAnimal.y, oldAnimal.size, oldAnimal.size);
   }
   
-  ctx.fillStyle = "#59c500";
-  if (animal.animalType === "POLICE"){
-    ctx.fillStyle = "blue";
-  }
-  if (animal.animalType === "GOLD"){
-    ctx.fillStyle = "gold";
-  }
-  if (animal.animalType === "PLAYER"){
-    ctx.fillStyle = "purple";
-  }
+  ctx.fillStyle = animalColor(animal.animalType);
   if (animal.alive) {
     ctx.fillRect(animal.x, animal.y, animal.size, animal.size);
     jQuery.data(document.body, String(animal.animalType + animal.number), animal);
   }
 }
 
+// A keyframe holds all visible animals in board coordinates, other frames only the changes
+function drawFrame(frame) {
+  if (frame.keyframe) {
+    frameAnimals = new Map();
+  }
+  if (!frameAnimals) return;
+  for (let animal of frame.animals) {
+    frameAnimals.set(animal.number, animal);
+  }
+  for (let number of frame.removed) {
+    frameAnimals.delete(number);
+  }
+
+  updateClock(frame.tick);
+  frames.push({
+    tick: frame.tick,
+    viewPortX: frame.viewPortX,
+    viewPortY: frame.viewPortY,
+    animals: new Map(frameAnimals)
+  });
+  // Keep one frame older than the moment drawn, to move from
+  let drawTick = renderTick(performance.now());
+  while (frames.length > 2 && frames[1].tick <= drawTick) {
+    frames.shift();
+  }
+}
+
+// Follow the tick of the server, smoothing out frames that arrive a little early or late
+function updateClock(tick) {
+  let now = performance.now();
+  if (clock === null || tick < clock.lastTick) {
+    clock = {tick: tick, time: now, lastTick: tick, lastTime: now};
+    return;
+  }
+  let ticks = tick - clock.lastTick;
+  if (ticks > 0 && ticks < 10 * ticksPerFrame + 10) {
+    msPerTick += ((now - clock.lastTime) / ticks - msPerTick) * 0.1;
+    ticksPerFrame += (ticks - ticksPerFrame) * 0.1;
+  }
+  let expected = clock.tick + (now - clock.time) / msPerTick;
+  clock.tick = expected + (tick - expected) * 0.1;
+  clock.time = now;
+  clock.lastTick = tick;
+  clock.lastTime = now;
+}
+
+function renderTick(now) {
+  return clock.tick + (now - clock.time) / msPerTick - FRAMES_BEHIND * ticksPerFrame;
+}
+
+function render(now) {
+  requestAnimationFrame(render);
+  if (frames.length === 0) return;
+  let tick = renderTick(now);
+  let from = frames[0];
+  let to = frames[frames.length - 1];
+  for (let i = 0; i + 1 < frames.length; i++) {
+    if (frames[i + 1].tick > tick) {
+      from = frames[i];
+      to = frames[i + 1];
+      break;
+    }
+  }
+  let t = to.tick > from.tick ? (tick - from.tick) / (to.tick - from.tick) : 1;
+  t = Math.min(1, Math.max(0, t));
+  let viewPortX = lerp(from.viewPortX, to.viewPortX, t);
+  let viewPortY = lerp(from.viewPortY, to.viewPortY, t);
+
+  ctx.clearRect(0, 0, canvas.width, canvas.height);
+  for (let animal of to.animals.values()) {
+    // Animals that just came into view, or were put elsewhere, are drawn where they are
+    let previous = from.animals.get(animal.number);
+    let moves = previous && Math.abs(animal.x - previous.x) + Math.abs(animal.y - previous.y) < 100;
+    let x = moves ? lerp(previous.x, animal.x, t) : animal.x;
+    let y = moves ? lerp(previous.y, animal.y, t) : animal.y;
+    ctx.fillStyle = animalColor(animal.animalType);
+    ctx.fillRect(x - viewPortX, y - viewPortY, animal.size, animal.size);
+  }
+}
+requestAnimationFrame(render);
+
+function lerp(from, to, t) {
+  return from + (to - from) * t;
+}
+
+// See BinaryFrameCodec for the layout; the frame arrives base64 encoded
+function decodeBinaryFrame(message) {
+  let bytes = Uint8Array.from(atob(message), c => c.charCodeAt(0));
+  let view = new DataView(bytes.buffer);
+  let frame = {
+    keyframe: (view.getUint8(1) & 1) === 1,
+    tick: Number(view.getBigInt64(2, true)),
+    viewPortX: view.getInt32(10, true),
+    viewPortY: view.getInt32(14, true),
+    animals: [],
+    removed: []
+  };
+  let amountOfAnimals = view.getInt32(18, true);
+  let amountRemoved = view.getInt32(22, true);
+  let offset = 26;
+  for (let i = 0; i < amountOfAnimals; i++, offset += 15) {
+    let typeAndAlive = view.getUint8(offset + 14);
+    frame.animals.push({
+      number: view.getInt32(offset, true),
+      x: view.getInt32(offset + 4, true),
+      y: view.getInt32(offset + 8, true),
+      size: view.getInt16(offset + 12, true),
+      animalType: ANIMAL_TYPES[typeAndAlive & 0x7f],
+      alive: (typeAndAlive & 0x80) !== 0
+    });
+  }
+  for (let i = 0; i < amountRemoved; i++, offset += 4) {
+    frame.removed.push(view.getInt32(offset, true));
+  }
+  return frame;
+}
+
+function animalColor(animalType) {
+  if (animalType === "POLICE"){
+    return "blue";
+  }
+  if (animalType === "GOLD"){
+    return "gold";
+  }
+  if (animalType === "PLAYER"){
+    return "purple";
+  }
+  return "#59c500";
+}
+
 function showMessage(message) {
   if (message === 'reset') {
     ctx.clearRect(0, 0, canvas.width, canvas.height);